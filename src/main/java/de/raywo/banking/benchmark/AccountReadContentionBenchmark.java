@@ -0,0 +1,123 @@
+package de.raywo.banking.benchmark;
+
+import de.raywo.banking.domain.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Misst, wie Lesezugriffe auf ein Konto mit der Zahl der Leser skalieren,
+ * während Schreiber ununterbrochen buchen. Verglichen werden der sperrfreie
+ * {@link Account#getState()} und das Lesen von Saldo, Status und
+ * Dispositionsrahmen unter der Sperre des Kontos.
+ * <p>
+ * Aufruf: {@code AccountReadContentionBenchmark [schreiber] [maxLeser] [millisProLauf]}
+ */
+public class AccountReadContentionBenchmark {
+
+  private static final Money AMOUNT = Money.euroOf(BigDecimal.ONE);
+
+  private static volatile long sink;
+
+
+  public static void main(String[] args) throws Exception {
+    int writers = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+    int maxReaders = args.length > 1 ? Integer.parseInt(args[1]) : 2 * Runtime.getRuntime().availableProcessors();
+    int millis = args.length > 2 ? Integer.parseInt(args[2]) : 1_000;
+
+    System.out.println("Schreiber: " + writers + ", Leser bis: " + maxReaders + ", Dauer: " + millis + " ms");
+
+    for (int round = 1; round <= 2; round++) {
+      System.out.println("Durchlauf " + round);
+
+      for (int readers = 1; readers <= maxReaders; readers *= 2) {
+        run("  sperrfrei ", readers, writers, millis, AccountReadContentionBenchmark::readState);
+        run("  gesperrt  ", readers, writers, millis, AccountReadContentionBenchmark::readLocked);
+      }
+    }
+  }
+
+
+  private static long readState(CurrentAccount account) {
+    AccountState state = account.getState();
+
+    return state.balance().minorUnits() + state.limit().minorUnits() + state.status().ordinal();
+  }
+
+
+  private static long readLocked(CurrentAccount account) {
+    synchronized (account) {
+      return account.getBalance().minorUnits() + account.getLimit().minorUnits() + account.getStatus().ordinal();
+    }
+  }
+
+
+  private static void run(String label, int readers, int writers, int millis, Reader reader)
+      throws InterruptedException {
+    CurrentAccount account = new CurrentAccount("DE00000000000000000001", new Customer("Benchmark", "Hamburg"));
+    account.setLimit(Money.euroOf(BigDecimal.TEN));
+
+    LongAdder reads = new LongAdder();
+    LongAdder postings = new LongAdder();
+    Thread[] threads = new Thread[readers + writers];
+    AtomicBoolean stop = new AtomicBoolean();
+
+    for (int i = 0; i < writers; i++) {
+      threads[i] = new Thread(() -> {
+        long count = 0;
+
+        while (!stop.get()) {
+          try {
+            account.makeTransaction(new Withdrawal(account.getIban(), "Auszahlung", AMOUNT));
+            account.makeTransaction(new Deposit(account.getIban(), "Einzahlung", AMOUNT));
+            count += 2;
+          } catch (Exception e) {
+            throw new IllegalStateException(e);
+          }
+        }
+
+        postings.add(count);
+      }, "writer-" + i);
+    }
+
+    for (int i = writers; i < threads.length; i++) {
+      threads[i] = new Thread(() -> {
+        long count = 0;
+        long sum = 0;
+
+        while (!stop.get()) {
+          for (int j = 0; j < 1_024; j++) {
+            sum += reader.read(account);
+          }
+          count += 1_024;
+        }
+
+        reads.add(count);
+        sink += sum;
+      }, "reader-" + i);
+    }
+
+    for (Thread thread : threads) {
+      thread.start();
+    }
+
+    Thread.sleep(millis);
+    stop.set(true);
+
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    double seconds = millis / 1_000.0;
+    System.out.printf("%s %2d Leser: %,14.0f Lesezugriffe/s, %,12.0f Buchungen/s%n",
+        label, readers, reads.sum() / seconds, postings.sum() / seconds);
+  }
+
+
+  @FunctionalInterface
+  private interface Reader {
+    long read(CurrentAccount account);
+  }
+
+}
@@ -0,0 +1,127 @@
+package de.raywo.banking.benchmark;
+
+import de.raywo.banking.domain.Account;
+import de.raywo.banking.domain.CurrentAccount;
+import de.raywo.banking.domain.Customer;
+import de.raywo.banking.persistence.CacheStats;
+import de.raywo.banking.persistence.CachingRepository;
+import de.raywo.banking.persistence.DirectoryStorage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Vergleicht die Trefferquote des {@link CachingRepository} mit einem
+ * einfachen LRU-Cache gleicher Größe. Die Zugriffe folgen einer
+ * Zipf-Verteilung über die Konten; dazwischen liest ein Bericht regelmäßig
+ * eine Folge selten genutzter Konten.
+ * <p>
+ * Aufruf: {@code CacheHitRateBenchmark [konten] [zugriffe]}
+ */
+public class CacheHitRateBenchmark {
+
+  private static final double ZIPF_EXPONENT = 0.99;
+  private static final int SCAN_EVERY = 20_000;
+  private static final int SCAN_LENGTH = 2_000;
+
+
+  public static void main(String[] args) throws IOException {
+    int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+    int requests = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+
+    Path directory = Files.createTempDirectory("accounts-");
+    List<String> ibans = createAccounts(directory, accounts);
+    int[] trace = trace(accounts, requests, new Random(42));
+
+    System.out.printf("%,d Konten, %,d Zugriffe%n", accounts, requests);
+    System.out.println("Cachegröße   W-TinyLFU   LRU");
+
+    for (double share : new double[]{0.01, 0.05, 0.10, 0.25}) {
+      int size = (int) (accounts * share);
+      CacheStats stats = replay(directory, ibans, trace, size);
+
+      System.out.printf("%,10d   %8.1f %%   %5.1f %%%n", size, 100 * stats.hitRate(), 100 * lruHitRate(trace, size));
+    }
+  }
+
+
+  private static List<String> createAccounts(Path directory, int count) throws IOException {
+    DirectoryStorage<String, Account> storage = new DirectoryStorage<>(directory, iban -> iban);
+    Customer owner = new Customer("Messung", "Hamburg");
+    List<String> ibans = new ArrayList<>(count);
+
+    for (int i = 0; i < count; i++) {
+      String iban = String.format("DE00%018d", i);
+      storage.write(iban, new CurrentAccount(iban, owner));
+      ibans.add(iban);
+    }
+
+    return ibans;
+  }
+
+
+  private static CacheStats replay(Path directory, List<String> ibans, int[] trace, int size) throws IOException {
+    CachingRepository<String, Account> repository =
+        new CachingRepository<>(new DirectoryStorage<>(directory, iban -> iban), size);
+    repository.initialize();
+
+    for (int account : trace) {
+      repository.findById(ibans.get(account));
+    }
+
+    CacheStats stats = repository.getStats();
+    repository.close();
+
+    return stats;
+  }
+
+
+  private static double lruHitRate(int[] trace, int size) {
+    Map<Integer, Boolean> lru = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Integer, Boolean> eldest) {
+        return size() > size;
+      }
+    };
+
+    long hits = 0;
+    for (int account : trace) {
+      if (lru.get(account) != null) {
+        hits++;
+      } else {
+        lru.put(account, Boolean.TRUE);
+      }
+    }
+
+    return (double) hits / trace.length;
+  }
+
+
+  private static int[] trace(int accounts, int requests, Random random) {
+    double[] cumulative = new double[accounts];
+    double sum = 0;
+
+    for (int i = 0; i < accounts; i++) {
+      sum += 1 / Math.pow(i + 1, ZIPF_EXPONENT);
+      cumulative[i] = sum;
+    }
+
+    int[] trace = new int[requests];
+    int scanStart = 0;
+
+    for (int i = 0; i < requests; i++) {
+      if (i % SCAN_EVERY < SCAN_LENGTH) {
+        trace[i] = accounts - 1 - (scanStart++ % (accounts / 2));
+        continue;
+      }
+
+      int rank = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+      trace[i] = Math.min(accounts - 1, rank < 0 ? -rank - 1 : rank);
+    }
+
+    return trace;
+  }
+
+}
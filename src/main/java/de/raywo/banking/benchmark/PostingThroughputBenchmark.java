@@ -0,0 +1,217 @@
+package de.raywo.banking.benchmark;
+
+import de.raywo.banking.domain.*;
+import de.raywo.banking.system.engine.PostingEngine;
+import de.raywo.banking.system.events.TransactionEventStream;
+import de.raywo.banking.system.events.TransactionJournal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Vergleicht den Durchsatz direkter {@link Account#makeTransaction(Transaction)}-Aufrufe
+ * aus vielen Threads mit der {@link PostingEngine}.
+ * <p>
+ * Die Varianten "mit Journal" veröffentlichen jede Buchung wie
+ * {@link de.raywo.banking.system.SiBank} über einen
+ * {@link TransactionEventStream} in ein {@link TransactionJournal}. Direkt
+ * gebucht wird das Journal einmal am Ende jedes Threads gesichert oder, wie
+ * es die Engine vor jeder Antwort tut, nach jeder einzelnen Buchung.
+ * <p>
+ * Aufruf: {@code PostingThroughputBenchmark [threads] [buchungenProThread] [konten]}
+ */
+public class PostingThroughputBenchmark {
+
+  private static final Money AMOUNT = Money.euroOf(BigDecimal.ONE);
+
+
+  public static void main(String[] args) throws Exception {
+    int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+    int postingsPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 500_000;
+    int accountCount = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+
+    System.out.println("Threads: " + threads + ", Buchungen pro Thread: " + postingsPerThread
+        + ", Konten: " + accountCount);
+
+    for (int round = 1; round <= 3; round++) {
+      System.out.println("Durchlauf " + round);
+      report("  direkt", threads * (long) postingsPerThread,
+          runDirect(createAccounts(accountCount), threads, postingsPerThread));
+      report("  Engine", threads * (long) postingsPerThread,
+          runEngine(createAccounts(accountCount), threads, postingsPerThread));
+      report("  direkt+Journal, am Ende gesichert", threads * (long) postingsPerThread,
+          runDirectJournaled(createAccounts(accountCount), threads, postingsPerThread, false));
+      report("  direkt+Journal, je Buchung gesichert", threads * (long) postingsPerThread,
+          runDirectJournaled(createAccounts(accountCount), threads, postingsPerThread, true));
+      report("  Engine+Journal", threads * (long) postingsPerThread,
+          runEngineJournaled(createAccounts(accountCount), threads, postingsPerThread));
+    }
+  }
+
+
+  private static long runDirect(Map<String, Account> accounts, int threads, int postingsPerThread)
+      throws InterruptedException {
+    String[] ibans = accounts.keySet().toArray(String[]::new);
+
+    return timed(threads, () -> {
+      ThreadLocalRandom random = ThreadLocalRandom.current();
+
+      for (int i = 0; i < postingsPerThread; i++) {
+        String iban = ibans[random.nextInt(ibans.length)];
+        try {
+          accounts.get(iban).makeTransaction(new Deposit(iban, "Einzahlung", AMOUNT));
+        } catch (Exception e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    });
+  }
+
+
+  private static long runEngine(Map<String, Account> accounts, int threads, int postingsPerThread)
+      throws InterruptedException {
+    String[] ibans = accounts.keySet().toArray(String[]::new);
+
+    try (PostingEngine engine = new PostingEngine(accounts::get)) {
+      return timed(threads, () -> {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        CompletableFuture<Transaction> last = null;
+
+        for (int i = 0; i < postingsPerThread; i++) {
+          String iban = ibans[random.nextInt(ibans.length)];
+          last = engine.submit(new Deposit(iban, "Einzahlung", AMOUNT));
+        }
+
+        if (last != null) {
+          last.join();
+        }
+      });
+    }
+  }
+
+
+  private static long runDirectJournaled(Map<String, Account> accounts, int threads, int postingsPerThread,
+                                         boolean flushEachPosting) throws IOException, InterruptedException {
+    String[] ibans = accounts.keySet().toArray(String[]::new);
+    Path directory = Files.createTempDirectory("posting-benchmark");
+
+    try (TransactionEventStream events = createEventStream(directory)) {
+      accounts.values().forEach(account -> account.setTransactionListener(events));
+
+      return timed(threads, () -> {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        try {
+          for (int i = 0; i < postingsPerThread; i++) {
+            String iban = ibans[random.nextInt(ibans.length)];
+            accounts.get(iban).makeTransaction(new Deposit(iban, "Einzahlung", AMOUNT));
+
+            if (flushEachPosting) {
+              events.flush();
+            }
+          }
+
+          events.flush();
+        } catch (Exception e) {
+          throw new IllegalStateException(e);
+        }
+      });
+    } finally {
+      delete(directory);
+    }
+  }
+
+
+  private static long runEngineJournaled(Map<String, Account> accounts, int threads, int postingsPerThread)
+      throws IOException, InterruptedException {
+    String[] ibans = accounts.keySet().toArray(String[]::new);
+    Path directory = Files.createTempDirectory("posting-benchmark");
+
+    try (TransactionEventStream events = createEventStream(directory);
+         PostingEngine engine = new PostingEngine(accounts::get, events, PostingEngine.DEFAULT_CAPACITY)) {
+      accounts.values().forEach(account -> account.setTransactionListener(events));
+
+      return timed(threads, () -> {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        CompletableFuture<Transaction> last = null;
+
+        for (int i = 0; i < postingsPerThread; i++) {
+          String iban = ibans[random.nextInt(ibans.length)];
+          last = engine.submit(new Deposit(iban, "Einzahlung", AMOUNT));
+        }
+
+        if (last != null) {
+          last.join();
+        }
+      });
+    } finally {
+      delete(directory);
+    }
+  }
+
+
+  private static TransactionEventStream createEventStream(Path directory) throws IOException {
+    return new TransactionEventStream(TransactionEventStream.DEFAULT_CAPACITY,
+        TransactionJournal.open(directory.resolve("transactions.journal")));
+  }
+
+
+  private static void delete(Path directory) throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      files.sorted(Comparator.reverseOrder()).forEach(file -> {
+        try {
+          Files.delete(file);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    }
+  }
+
+
+  private static long timed(int threads, Runnable work) throws InterruptedException {
+    Thread[] workers = new Thread[threads];
+    for (int i = 0; i < threads; i++) {
+      workers[i] = new Thread(work, "benchmark-" + i);
+    }
+
+    long start = System.nanoTime();
+    for (Thread worker : workers) {
+      worker.start();
+    }
+    for (Thread worker : workers) {
+      worker.join();
+    }
+
+    return System.nanoTime() - start;
+  }
+
+
+  private static Map<String, Account> createAccounts(int count) {
+    Customer owner = new Customer("Benchmark", "Hamburg");
+    Map<String, Account> accounts = new HashMap<>();
+
+    for (int i = 0; i < count; i++) {
+      String iban = "DE" + String.format("%08d", i);
+      accounts.put(iban, new CurrentAccount(iban, owner));
+    }
+
+    return accounts;
+  }
+
+
+  private static void report(String label, long postings, long nanos) {
+    double seconds = nanos / 1_000_000_000.0;
+    System.out.printf("%-40s %,12.0f Buchungen/s (%.2f s)%n", label, postings / seconds, seconds);
+  }
+
+}
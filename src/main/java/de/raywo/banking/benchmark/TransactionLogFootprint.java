@@ -0,0 +1,92 @@
+package de.raywo.banking.benchmark;
+
+import de.raywo.banking.domain.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Misst den Heap-Bedarf von einer Million Buchungen als {@link Transaction}-Objekte
+ * in einer {@link ArrayList} im Vergleich zum {@link TransactionLog} eines Kontos.
+ * <p>
+ * Aufruf mit festem Heap, z. B. {@code java -Xms1g -Xmx1g TransactionLogFootprint}
+ */
+public class TransactionLogFootprint {
+
+  private static final int COUNT = 1_000_000;
+  private static final String IBAN = "DE89370400440532013000";
+
+
+  public static void main(String[] args) {
+    long baseline = usedHeap();
+    List<Transaction> objects = createObjects();
+    long objectBytes = usedHeap() - baseline;
+
+    System.out.printf("Transaction-Objekte: %,d Bytes (%,.1f Bytes/Buchung)%n",
+        objectBytes, objectBytes / (double) COUNT);
+
+    Account account = new CurrentAccount(IBAN, new Customer("Messung", "Hamburg"));
+    account.setPurposeDictionary(new PurposeDictionary());
+    objects.clear();
+    objects = null;
+
+    baseline = usedHeap();
+    fill(account);
+    long logBytes = usedHeap() - baseline;
+
+    System.out.printf("TransactionLog:      %,d Bytes (%,.1f Bytes/Buchung)%n",
+        logBytes, logBytes / (double) COUNT);
+    System.out.printf("Ersparnis:           %,d Bytes pro Million Buchungen (%.0f %%)%n",
+        objectBytes - logBytes, 100.0 * (objectBytes - logBytes) / objectBytes);
+    System.out.println("Kontrollwert: " + account.getTransactions().size());
+  }
+
+
+  private static List<Transaction> createObjects() {
+    List<Transaction> transactions = new ArrayList<>(COUNT);
+    Instant start = Instant.now();
+
+    for (int i = 0; i < COUNT; i++) {
+      transactions.add(transactionOf(i, start));
+    }
+
+    return transactions;
+  }
+
+
+  private static void fill(Account account) {
+    Instant start = Instant.now();
+
+    try {
+      for (int i = 0; i < COUNT; i++) {
+        account.makeTransaction(transactionOf(i, start));
+      }
+    } catch (Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+
+  private static Transaction transactionOf(int i, Instant start) {
+    Money amount = Money.euroOf(BigDecimal.valueOf(1 + i % 500, 1));
+    Instant timestamp = start.plusNanos(i * 1_000L);
+
+    return i % 4 == 3
+        ? new Withdrawal(IBAN, "Auszahlung", amount, timestamp)
+        : new Deposit(IBAN, "Einzahlung", amount, timestamp);
+  }
+
+
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+
+    for (int i = 0; i < 5; i++) {
+      System.gc();
+    }
+
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+}
@@ -1,29 +1,40 @@
 package de.raywo.banking.domain;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.math.BigDecimal;
 import java.text.NumberFormat;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.List;
-
+import java.time.Instant;
+import java.util.*;
+import java.util.function.UnaryOperator;
+
+/**
+ * Ein Konto mit Umsätzen und Vormerkungen.
+ * <p>
+ * Saldo, Vormerkungen, Status, Dispositionsrahmen, Zinssatz und Inhaber
+ * bilden einen unveränderlichen {@link AccountState}. Schreibende Methoden
+ * halten die Sperre des Kontos und ersetzen den Stand durch eine geänderte
+ * Kopie; lesende Methoden greifen ohne Sperre auf den zuletzt veröffentlichten
+ * Stand zu und konkurrieren so nicht mit Buchungen.
+ */
 public abstract class Account implements Serializable, Identifiable<String> {
 
   private final String iban;
-  private Money balance;
-  private float interestRate;
-  private Customer owner;
-  private AccountStatus status;
-  private final List<Transaction> transactions;
+  private volatile AccountState state;
+  private final TransactionLog transactions;
+  private final Map<UUID, AuthorizationHold> holds;
+  private byte[] historyDigest;
+  private transient PostingRules postingRules;
+  private transient TransactionListener transactionListener;
 
 
   public Account(String iban, Customer owner) {
     this.iban = iban;
-    this.owner = owner;
-    this.balance = Money.zeroEuro();
-    this.interestRate = 0.0f;
-    this.status = AccountStatus.ACTIVE;
-    this.transactions = new ArrayList<>();
+    this.state = AccountState.initial(owner);
+    this.transactions = new TransactionLog(iban);
+    this.holds = new HashMap<>();
+    this.historyDigest = HistoryDigest.initial(iban);
   }
 
 
@@ -38,58 +49,272 @@ public abstract class Account implements Serializable, Identifiable<String> {
   }
 
 
+  /**
+   * Liefert den aktuellen Stand des Kontos, ohne es zu sperren.
+   */
+  public AccountState getState() {
+    return state;
+  }
+
+
   public Money getBalance() {
-    return balance;
+    return state.balance();
   }
 
 
   public float getInterestRate() {
-    return interestRate;
+    return state.interestRate();
   }
 
 
   public void setInterestRate(float interestRate) {
-    this.interestRate = interestRate;
+    updateState(current -> current.withInterestRate(interestRate));
   }
 
 
   public Customer getOwner() {
-    return owner;
+    return state.owner();
   }
 
 
   public void setOwner(Customer owner) {
-    this.owner = owner;
+    updateState(current -> current.withOwner(owner));
   }
 
 
   public AccountStatus getStatus() {
-    return status;
+    return state.status();
   }
 
 
   public void setStatus(AccountStatus status) {
-    this.status = status;
+    updateState(current -> current.withStatus(status));
+  }
+
+
+  public Money getReserved() {
+    return state.reserved();
+  }
+
+
+  public Money getAvailableBalance() {
+    return state.availableBalance();
+  }
+
+
+  public synchronized Collection<AuthorizationHold> getHolds() {
+    return List.copyOf(holds.values());
+  }
+
+
+  public AuthorizationHold placeHold(Money amount, String purpose, Instant expiresAt)
+      throws InsufficientFundsException {
+    try {
+      return reserve(amount, purpose, expiresAt);
+    } finally {
+      stateChanged();
+    }
   }
 
 
+  private synchronized AuthorizationHold reserve(Money amount, String purpose, Instant expiresAt)
+      throws InsufficientFundsException {
+    if (amount.amount().compareTo(BigDecimal.ZERO) <= 0) {
+      throw new InvalidAmountException("Der vorzumerkende Betrag muss positiv sein.");
+    }
+
+    if (!isAmountAvailable(amount)) {
+      throw new InsufficientFundsException("Der vorzumerkende Betrag übersteigt das verfügbare Guthaben.");
+    }
+
+    AuthorizationHold hold = new AuthorizationHold(UUID.randomUUID(), iban, amount, purpose, expiresAt);
+    addHold(hold);
+
+    return hold;
+  }
+
+
+  public Optional<AuthorizationHold> releaseHold(UUID holdId) {
+    try {
+      return release(holdId);
+    } finally {
+      stateChanged();
+    }
+  }
+
+
+  private synchronized Optional<AuthorizationHold> release(UUID holdId) {
+    AuthorizationHold hold = holds.get(holdId);
+    if (hold != null) {
+      removeHold(hold);
+    }
+
+    return Optional.ofNullable(hold);
+  }
+
+
+  public Withdrawal captureHold(UUID holdId, Money amount)
+      throws HoldNotFoundException, InsufficientFundsException, TransactionRejectedException {
+    try {
+      return capture(holdId, amount);
+    } finally {
+      postingsCompleted();
+      stateChanged();
+    }
+  }
+
+
+  private synchronized Withdrawal capture(UUID holdId, Money amount)
+      throws HoldNotFoundException, InsufficientFundsException, TransactionRejectedException {
+    AuthorizationHold hold = holds.get(holdId);
+    if (hold == null) {
+      throw new HoldNotFoundException("Eine Vormerkung mit der ID " + holdId + " existiert nicht.");
+    }
+
+    if (Money.sameCurrencyComparator(hold.amount().currency()).compare(amount, hold.amount()) > 0) {
+      throw new InvalidAmountException("Der Betrag übersteigt die Vormerkung.");
+    }
+
+    removeHold(hold);
+    Withdrawal withdrawal = new Withdrawal(iban, hold.purpose(), amount);
+
+    try {
+      post(withdrawal);
+    } catch (InsufficientFundsException | TransactionRejectedException e) {
+      addHold(hold);
+      throw e;
+    } catch (AccountMismatchException e) {
+      addHold(hold);
+      throw new IllegalStateException(e);
+    }
+
+    return withdrawal;
+  }
+
+
+  /**
+   * Eine Sicht auf den Verlauf, die mit jeder Buchung wächst. Sie darf ohne
+   * Sperre gelesen werden; {@link List#size()} einmal lesen und dann bis
+   * dahin zugreifen liefert stets vollständige Buchungen.
+   */
   public List<Transaction> getTransactions() {
-    return Collections.unmodifiableList(transactions);
+    return transactions.asList();
+  }
+
+
+  public TransactionLog getTransactionLog() {
+    return transactions;
+  }
+
+
+  /**
+   * Liefert das letzte Glied der Hashkette über alle Umsätze.
+   */
+  public synchronized byte[] getHistoryDigest() {
+    return currentHistoryDigest().clone();
+  }
+
+
+  public void setPostingRules(PostingRules postingRules) {
+    this.postingRules = postingRules;
   }
 
 
-  public void makeTransaction(Transaction transaction) throws InsufficientFundsException, AccountMismatchException {
+  /**
+   * Gibt dem Verlauf das Wörterbuch der Bank, in der das Konto geführt wird.
+   * Bisherige Buchungen werden dabei neu kodiert.
+   */
+  public synchronized void setPurposeDictionary(PurposeDictionary purposeDictionary) {
+    transactions.usePurposeDictionary(Objects.requireNonNull(purposeDictionary));
+  }
+
+
+  public void setTransactionListener(TransactionListener transactionListener) {
+    this.transactionListener = transactionListener;
+  }
+
+
+  public void makeTransaction(Transaction transaction)
+      throws InsufficientFundsException, AccountMismatchException, TransactionRejectedException {
+    try {
+      post(transaction);
+    } finally {
+      postingsCompleted();
+    }
+  }
+
+
+  private synchronized void post(Transaction transaction)
+      throws InsufficientFundsException, AccountMismatchException, TransactionRejectedException {
     if (!transaction.getIban().equals(iban)) {
       throw new AccountMismatchException("Die IBAN der Transaktion passt nicht zur IBAN des Kontos.");
     }
 
+    PostingRules rules = this.postingRules;
+    if (rules != null) {
+      rules.check(this, transaction);
+    }
+
     transaction.applyTo(this);
-    this.transactions.add(transaction);
+    record(transaction, rules);
+  }
+
+
+  /**
+   * Übernimmt eine auf einem anderen Knoten bereits gebuchte Transaktion an
+   * der Stelle {@code position} des Verlaufs, ohne sie erneut zu prüfen.
+   * Liefert {@code false}, wenn der Verlauf sie schon enthält.
+   */
+  public boolean replicate(Transaction transaction, int position) throws AccountMismatchException {
+    try {
+      return adopt(transaction, position);
+    } finally {
+      postingsCompleted();
+    }
+  }
+
+
+  private synchronized boolean adopt(Transaction transaction, int position) throws AccountMismatchException {
+    if (!transaction.getIban().equals(iban)) {
+      throw new AccountMismatchException("Die IBAN der Transaktion passt nicht zur IBAN des Kontos.");
+    }
+
+    if (position < transactions.size()) {
+      return false;
+    }
+
+    if (position > transactions.size()) {
+      throw new IllegalStateException("Lücke im Verlauf von " + iban + ": erwartet Position "
+          + transactions.size() + ", erhalten " + position);
+    }
+
+    AccountState current = state;
+    if (transaction instanceof Deposit) {
+      state = current.withBalance(current.balance().add(transaction.getAmount()));
+    } else {
+      state = current.withBalance(current.balance().subtract(transaction.getAmount()));
+    }
+
+    record(transaction, null);
+    return true;
+  }
+
+
+  /**
+   * Übernimmt Vormerkungen, Status, Dispositionsrahmen, Zinssatz und Inhaber
+   * von einem anderen Knoten. Der Saldo bleibt unberührt; er folgt allein den
+   * mit {@link #replicate} übernommenen Buchungen.
+   */
+  public synchronized void replicateState(AccountState replicated, Collection<AuthorizationHold> replicatedHolds) {
+    holds.clear();
+    replicatedHolds.forEach(hold -> holds.put(hold.id(), hold));
+    state = replicated.withBalance(state.balance());
   }
 
 
   void deposit(Money amount) {
-    this.balance = this.balance.add(amount);
+    AccountState current = state;
+    state = current.withBalance(current.balance().add(amount));
   }
 
 
@@ -98,7 +323,95 @@ public abstract class Account implements Serializable, Identifiable<String> {
       throw new InsufficientFundsException("Der abzuhebende Betrag übersteigt das verfügbare Guthaben.");
     }
 
-    this.balance = balance.subtract(amount);
+    AccountState current = state;
+    state = current.withBalance(current.balance().subtract(amount));
+  }
+
+
+  /**
+   * Ändert den Stand unter der Sperre des Kontos, veröffentlicht die Kopie
+   * und meldet die Änderung nach Freigabe der Sperre dem Listener.
+   */
+  protected final void updateState(UnaryOperator<AccountState> change) {
+    try {
+      synchronized (this) {
+        state = Objects.requireNonNull(change.apply(state));
+      }
+    } finally {
+      stateChanged();
+    }
+  }
+
+
+  private void record(Transaction transaction, PostingRules rules) {
+    this.transactions.append(transaction);
+    this.historyDigest = HistoryDigest.next(currentHistoryDigest(), transactions, transactions.size() - 1);
+
+    if (rules != null) {
+      rules.posted(this, transaction);
+    }
+
+    TransactionListener listener = this.transactionListener;
+    if (listener != null) {
+      listener.transactionPosted(this, transaction, transactions.size() - 1);
+    }
+  }
+
+
+  /**
+   * Meldet dem Listener das Ende einer Buchung, sobald die Sperre des Kontos
+   * wieder frei ist; bei geschachtelten Aufrufen erst im äußersten.
+   */
+  private void postingsCompleted() {
+    TransactionListener listener = this.transactionListener;
+    if (listener != null && !Thread.holdsLock(this)) {
+      listener.postingsCompleted(this);
+    }
+  }
+
+
+  /**
+   * Meldet dem Listener eine Änderung an Vormerkungen oder Einstellungen des
+   * Kontos, sobald die Sperre wieder frei ist.
+   */
+  private void stateChanged() {
+    TransactionListener listener = this.transactionListener;
+    if (listener != null && !Thread.holdsLock(this)) {
+      listener.stateChanged(this);
+    }
+  }
+
+
+  private byte[] currentHistoryDigest() {
+    if (historyDigest == null) {
+      historyDigest = HistoryDigest.of(iban, transactions);
+    }
+
+    return historyDigest;
+  }
+
+
+  private void addHold(AuthorizationHold hold) {
+    holds.put(hold.id(), hold);
+    AccountState current = state;
+    state = current.withReserved(current.reserved().add(hold.amount()));
+
+    TransactionListener listener = this.transactionListener;
+    if (listener != null) {
+      listener.holdPlaced(this, hold);
+    }
+  }
+
+
+  private void removeHold(AuthorizationHold hold) {
+    holds.remove(hold.id());
+    AccountState current = state;
+    state = current.withReserved(current.reserved().subtract(hold.amount()));
+
+    TransactionListener listener = this.transactionListener;
+    if (listener != null) {
+      listener.holdRemoved(this, hold);
+    }
   }
 
 
@@ -119,22 +432,33 @@ public abstract class Account implements Serializable, Identifiable<String> {
 
   @Override
   public String toString() {
+    return toString(state);
+  }
+
+
+  protected String toString(AccountState state) {
     NumberFormat df = NumberFormat.getPercentInstance();
     df.setMaximumFractionDigits(2);
     df.setMinimumFractionDigits(2);
 
     return "[" + iban + "]" +
-        ", Saldo: " + balance +
-        ", Zinssatz: " + df.format(interestRate) +
-        ", Inhaber: " + owner +
-        ", (" + status + ")";
+        ", Saldo: " + state.balance() +
+        ", Zinssatz: " + df.format(state.interestRate()) +
+        ", Inhaber: " + state.owner() +
+        ", (" + state.status() + ")";
   }
 
 
   protected boolean isAmountAvailable(Money amount) {
-    Comparator<Money> comparator = Money.sameCurrencyComparator(balance.currency());
+    AccountState current = state;
+    Comparator<Money> comparator = Money.sameCurrencyComparator(current.balance().currency());
+
+    return comparator.compare(amount, current.availableBalance()) <= 0;
+  }
+
 
-    return comparator.compare(amount, balance) <= 0;
+  private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+    out.defaultWriteObject();
   }
 
 }
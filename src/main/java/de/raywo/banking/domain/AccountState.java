@@ -0,0 +1,69 @@
+package de.raywo.banking.domain;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Ein unveränderlicher Stand eines Kontos. Jede Buchung und jede Änderung
+ * ersetzt den Stand als Ganzes, so dass ein Leser Saldo, Vormerkungen,
+ * Status und Dispositionsrahmen immer in einer zueinander passenden
+ * Kombination sieht, ohne das Konto zu sperren. Sparkonten haben den
+ * Dispositionsrahmen null.
+ */
+public record AccountState(
+    Money balance,
+    Money reserved,
+    Money limit,
+    AccountStatus status,
+    float interestRate,
+    Customer owner
+) implements Serializable {
+
+  public AccountState {
+    Objects.requireNonNull(balance);
+    Objects.requireNonNull(reserved);
+    Objects.requireNonNull(limit);
+    Objects.requireNonNull(status);
+  }
+
+
+  static AccountState initial(Customer owner) {
+    return new AccountState(Money.zeroEuro(), Money.zeroEuro(), Money.zeroEuro(), AccountStatus.ACTIVE, 0.0f, owner);
+  }
+
+
+  public Money availableBalance() {
+    return balance.subtract(reserved);
+  }
+
+
+  AccountState withBalance(Money balance) {
+    return new AccountState(balance, reserved, limit, status, interestRate, owner);
+  }
+
+
+  AccountState withReserved(Money reserved) {
+    return new AccountState(balance, reserved, limit, status, interestRate, owner);
+  }
+
+
+  AccountState withLimit(Money limit) {
+    return new AccountState(balance, reserved, limit, status, interestRate, owner);
+  }
+
+
+  AccountState withStatus(AccountStatus status) {
+    return new AccountState(balance, reserved, limit, status, interestRate, owner);
+  }
+
+
+  AccountState withInterestRate(float interestRate) {
+    return new AccountState(balance, reserved, limit, status, interestRate, owner);
+  }
+
+
+  AccountState withOwner(Customer owner) {
+    return new AccountState(balance, reserved, limit, status, interestRate, owner);
+  }
+
+}
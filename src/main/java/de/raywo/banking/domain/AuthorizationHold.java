@@ -0,0 +1,28 @@
+package de.raywo.banking.domain;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.UUID;
+
+public record AuthorizationHold(
+    UUID id,
+    String iban,
+    Money amount,
+    String purpose,
+    Instant expiresAt
+) implements Serializable {
+
+  public AuthorizationHold {
+    Objects.requireNonNull(id);
+    Objects.requireNonNull(iban);
+    Objects.requireNonNull(amount);
+    Objects.requireNonNull(expiresAt);
+  }
+
+
+  public boolean isExpired(Instant now) {
+    return !expiresAt.isAfter(now);
+  }
+
+}
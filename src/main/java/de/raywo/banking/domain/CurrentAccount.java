@@ -5,55 +5,39 @@ import java.text.NumberFormat;
 
 public class CurrentAccount extends Account {
 
-  private float interestRate;
-  private Money limit;
-
-
   public CurrentAccount(String iban, Customer owner) {
     super(iban, owner);
-    this.interestRate = 0.00f;
-    this.limit = Money.zeroEuro();
-  }
-
-
-  @Override
-  public float getInterestRate() {
-    return interestRate;
-  }
-
-
-  @Override
-  public void setInterestRate(float interestRate) {
-    this.interestRate = interestRate;
   }
 
 
   public Money getLimit() {
-    return limit;
+    return getState().limit();
   }
 
 
   public void setLimit(Money limit) {
-    this.limit = limit;
+    updateState(state -> state.withLimit(limit));
   }
 
 
   @Override
-  public String toString() {
+  protected String toString(AccountState state) {
     DecimalFormat df = (DecimalFormat) NumberFormat.getPercentInstance();
     df.setMaximumFractionDigits(2);
     df.setMinimumFractionDigits(2);
 
-    return super.toString() +
-        ", Dispo: " + limit +
-        ", Sollzins: " + df.format(interestRate);
+    return super.toString(state) +
+        ", Dispo: " + state.limit() +
+        ", Sollzins: " + df.format(state.interestRate());
   }
 
 
   @Override
   protected boolean isAmountAvailable(Money amount) throws CurrencyMismatchException {
+    AccountState state = getState();
+
     return amount.amount()
-        .compareTo(getBalance().add(limit).amount()) <= 0;
+        .compareTo(state.availableBalance().add(state.limit()).amount()) <= 0;
   }
 
 }
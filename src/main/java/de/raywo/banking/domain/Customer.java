@@ -1,6 +1,7 @@
 package de.raywo.banking.domain;
 
 import java.io.Serializable;
+import java.util.Objects;
 import java.util.UUID;
 
 public class Customer implements Serializable, Identifiable<UUID> {
@@ -11,7 +12,12 @@ public class Customer implements Serializable, Identifiable<UUID> {
 
 
   public Customer(String name, String city) {
-    this.id = UUID.randomUUID();
+    this(UUID.randomUUID(), name, city);
+  }
+
+
+  public Customer(UUID id, String name, String city) {
+    this.id = Objects.requireNonNull(id);
     this.name = name;
     this.city = city;
   }
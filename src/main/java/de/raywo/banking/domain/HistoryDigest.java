@@ -0,0 +1,87 @@
+package de.raywo.banking.domain;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Eine SHA-256-Hashkette über den Umsätzen eines Kontos.
+ * <p>
+ * Der Anfang der Kette hängt nur von der IBAN ab; jedes Glied ist der Hash
+ * aus dem vorigen Glied und den gespeicherten Werten eines Umsatzes. Das
+ * letzte Glied bestätigt damit den gesamten Verlauf und lässt sich bei jeder
+ * Buchung in konstanter Zeit fortschreiben.
+ */
+public final class HistoryDigest {
+
+  public static final int LENGTH = 32;
+
+  private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(HistoryDigest::sha256);
+
+
+  private HistoryDigest() {
+  }
+
+
+  public static byte[] initial(String iban) {
+    MessageDigest digest = SHA_256.get();
+    digest.update(iban.getBytes(StandardCharsets.UTF_8));
+
+    return digest.digest();
+  }
+
+
+  public static byte[] next(byte[] previous, boolean deposit, long amountMinorUnits, long timestampMicros,
+                            String purpose) {
+    ByteBuffer fields = ByteBuffer.allocate(18);
+    fields.put(deposit ? (byte) 0 : (byte) 1);
+    fields.putLong(amountMinorUnits);
+    fields.putLong(timestampMicros);
+    fields.put(purpose == null ? (byte) 0 : (byte) 1);
+
+    MessageDigest digest = SHA_256.get();
+    digest.update(previous);
+    digest.update(fields.array());
+    if (purpose != null) {
+      digest.update(purpose.getBytes(StandardCharsets.UTF_8));
+    }
+
+    return digest.digest();
+  }
+
+
+  public static byte[] next(byte[] previous, TransactionLog log, int index) {
+    return next(
+        previous,
+        log.isDeposit(index),
+        log.getAmountMinorUnits(index),
+        log.getTimestampMicros(index),
+        log.getPurpose(index)
+    );
+  }
+
+
+  /**
+   * Berechnet die Kette über alle Umsätze des Protokolls neu.
+   */
+  public static byte[] of(String iban, TransactionLog log) {
+    byte[] digest = initial(iban);
+
+    for (int i = 0; i < log.size(); i++) {
+      digest = next(digest, log, i);
+    }
+
+    return digest;
+  }
+
+
+  public static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 ist nicht verfügbar.", e);
+    }
+  }
+
+}
@@ -0,0 +1,9 @@
+package de.raywo.banking.domain;
+
+public class HoldNotFoundException extends Exception {
+
+  public HoldNotFoundException(String message) {
+    super(message);
+  }
+
+}
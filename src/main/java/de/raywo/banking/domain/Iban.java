@@ -0,0 +1,213 @@
+package de.raywo.banking.domain;
+
+import java.io.Serializable;
+
+/**
+ * Eine IBAN in kompakter binärer Form.
+ * <p>
+ * Ländercode (2 × 5 Bit), Prüfziffern (7 Bit) und Länge der BBAN (5 Bit)
+ * liegen zusammen mit den ersten 8 Zeichen der BBAN in {@code head}; die
+ * übrigen Zeichen folgen zu je 12 in {@code middle} und {@code tail}. Die
+ * BBAN-Zeichen werden zur Basis 36 kodiert. Damit passen BBANs mit bis zu
+ * 32 Zeichen – also alle IBANs nach ISO 13616 – in drei {@code long}s.
+ * <p>
+ * {@link #of(String)} prüft nur den Aufbau, {@link #isValid()} zusätzlich die
+ * Prüfziffern nach dem Modulo-97-Verfahren.
+ */
+public record Iban(long head, long middle, long tail) implements Serializable {
+
+  private static final int MIN_LENGTH = 5;
+  private static final int MAX_LENGTH = 34;
+  private static final int HEAD_CHARS = 8;
+  private static final int WORD_CHARS = 12;
+  private static final int BBAN_LENGTH_SHIFT = 42;
+  private static final int CHECK_DIGITS_SHIFT = 47;
+  private static final int COUNTRY_SHIFT = 54;
+  private static final long[] POWERS_OF_36 = new long[WORD_CHARS + 1];
+
+  static {
+    POWERS_OF_36[0] = 1L;
+    for (int i = 1; i < POWERS_OF_36.length; i++) {
+      POWERS_OF_36[i] = POWERS_OF_36[i - 1] * 36L;
+    }
+  }
+
+
+  public static Iban of(String iban) {
+    if (iban == null) {
+      throw new InvalidIbanException("Die IBAN darf nicht leer sein.");
+    }
+
+    int length = 0;
+    long country = 0L;
+    long checkDigits = 0L;
+    long first = 0L;
+    long second = 0L;
+    long third = 0L;
+
+    for (int i = 0; i < iban.length(); i++) {
+      char c = iban.charAt(i);
+      if (c >= 'a' && c <= 'z') {
+        c -= 'a' - 'A';
+      }
+
+      if (c == ' ') {
+        continue;
+      }
+
+      if (length < 2) {
+        if (c < 'A' || c > 'Z') {
+          throw invalid(iban);
+        }
+        country = (country << 5) | (c - 'A');
+      } else if (length < 4) {
+        if (c < '0' || c > '9') {
+          throw invalid(iban);
+        }
+        checkDigits = checkDigits * 10 + (c - '0');
+      } else {
+        int digit = base36(c);
+        int position = length - 4;
+        if (digit < 0 || length >= MAX_LENGTH) {
+          throw invalid(iban);
+        }
+
+        if (position < HEAD_CHARS) {
+          first = first * 36 + digit;
+        } else if (position < HEAD_CHARS + WORD_CHARS) {
+          second = second * 36 + digit;
+        } else {
+          third = third * 36 + digit;
+        }
+      }
+
+      length++;
+    }
+
+    if (length < MIN_LENGTH) {
+      throw invalid(iban);
+    }
+
+    int bbanLength = length - 4;
+    first *= POWERS_OF_36[HEAD_CHARS - charsIn(bbanLength, HEAD_CHARS)];
+    second *= POWERS_OF_36[WORD_CHARS - charsIn(bbanLength - HEAD_CHARS, WORD_CHARS)];
+    third *= POWERS_OF_36[WORD_CHARS - charsIn(bbanLength - HEAD_CHARS - WORD_CHARS, WORD_CHARS)];
+
+    long head = (country << COUNTRY_SHIFT)
+        | (checkDigits << CHECK_DIGITS_SHIFT)
+        | ((long) bbanLength << BBAN_LENGTH_SHIFT)
+        | first;
+
+    return new Iban(head, second, third);
+  }
+
+
+  public static boolean isValid(String iban) {
+    try {
+      return of(iban).isValid();
+    } catch (InvalidIbanException e) {
+      return false;
+    }
+  }
+
+
+  public String countryCode() {
+    int country = (int) (head >>> COUNTRY_SHIFT);
+    return new String(new char[]{(char) ('A' + (country >>> 5)), (char) ('A' + (country & 0x1F))});
+  }
+
+
+  public int checkDigits() {
+    return (int) ((head >>> CHECK_DIGITS_SHIFT) & 0x7F);
+  }
+
+
+  public int bbanLength() {
+    return (int) ((head >>> BBAN_LENGTH_SHIFT) & 0x1F);
+  }
+
+
+  public boolean isValid() {
+    int remainder = 0;
+
+    for (int i = 0; i < bbanLength(); i++) {
+      remainder = mod97(remainder, bbanDigit(i));
+    }
+
+    int country = (int) (head >>> COUNTRY_SHIFT);
+    remainder = mod97(remainder, 10 + (country >>> 5));
+    remainder = mod97(remainder, 10 + (country & 0x1F));
+    remainder = mod97(remainder, checkDigits() / 10);
+    remainder = mod97(remainder, checkDigits() % 10);
+
+    return remainder == 1;
+  }
+
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder(4 + bbanLength());
+    sb.append(countryCode());
+
+    int checkDigits = checkDigits();
+    sb.append((char) ('0' + checkDigits / 10)).append((char) ('0' + checkDigits % 10));
+
+    for (int i = 0; i < bbanLength(); i++) {
+      int digit = bbanDigit(i);
+      sb.append((char) (digit < 10 ? '0' + digit : 'A' + digit - 10));
+    }
+
+    return sb.toString();
+  }
+
+
+  private int bbanDigit(int position) {
+    long word;
+    int index;
+    int width;
+
+    if (position < HEAD_CHARS) {
+      word = head & ((1L << BBAN_LENGTH_SHIFT) - 1);
+      index = position;
+      width = HEAD_CHARS;
+    } else {
+      int offset = position - HEAD_CHARS;
+      word = offset < WORD_CHARS ? middle : tail;
+      index = offset % WORD_CHARS;
+      width = WORD_CHARS;
+    }
+
+    return (int) ((word / POWERS_OF_36[width - 1 - index]) % 36);
+  }
+
+
+  private static int charsIn(int remaining, int width) {
+    return Math.max(0, Math.min(remaining, width));
+  }
+
+
+  private static int mod97(int remainder, int digit) {
+    return digit < 10
+        ? (remainder * 10 + digit) % 97
+        : (remainder * 100 + digit) % 97;
+  }
+
+
+  private static int base36(char c) {
+    if (c >= '0' && c <= '9') {
+      return c - '0';
+    }
+
+    if (c >= 'A' && c <= 'Z') {
+      return c - 'A' + 10;
+    }
+
+    return -1;
+  }
+
+
+  private static InvalidIbanException invalid(String iban) {
+    return new InvalidIbanException("Ungültige IBAN: " + iban);
+  }
+
+}
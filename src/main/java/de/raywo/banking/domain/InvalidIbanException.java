@@ -0,0 +1,7 @@
+package de.raywo.banking.domain;
+
+public class InvalidIbanException extends RuntimeException {
+  public InvalidIbanException(String message) {
+    super(message);
+  }
+}
@@ -25,6 +25,11 @@ public record Money(
   }
 
 
+  public static Money ofMinorUnits(long minorUnits, Currency currency) {
+    return new Money(BigDecimal.valueOf(minorUnits, 2), currency);
+  }
+
+
   public static Money zeroEuro() {
     return euroOf(BigDecimal.ZERO);
   }
@@ -46,6 +51,11 @@ public record Money(
   }
 
 
+  public long minorUnits() {
+    return amount.unscaledValue().longValueExact();
+  }
+
+
   public static Comparator<Money> sameCurrencyComparator(Currency expected) {
     Objects.requireNonNull(expected);
 
@@ -0,0 +1,19 @@
+package de.raywo.banking.domain;
+
+/**
+ * Eine Prüfregel, die vor dem Buchen einer Transaktion ausgewertet wird.
+ * <p>
+ * {@link #check(Account, Transaction)} darf die Buchung durch eine
+ * {@link TransactionRejectedException} ablehnen. Nach erfolgreicher Buchung
+ * wird {@link #posted(Account, Transaction)} aufgerufen, damit die Regel
+ * ihren Zustand (z. B. Zähler) fortschreiben kann.
+ */
+public interface PostingRule {
+
+  void check(Account account, Transaction transaction) throws TransactionRejectedException;
+
+
+  default void posted(Account account, Transaction transaction) {
+  }
+
+}
@@ -0,0 +1,54 @@
+package de.raywo.banking.domain;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Die Kette der {@link PostingRule}s, die ein Konto vor jeder Buchung
+ * durchläuft. Die Regeln liegen in einem Array, das bei Änderungen kopiert
+ * wird, sodass das Auswerten selbst keine Objekte erzeugt.
+ */
+public class PostingRules {
+
+  private volatile PostingRule[] rules = new PostingRule[0];
+
+
+  public synchronized void add(PostingRule rule) {
+    Objects.requireNonNull(rule);
+
+    PostingRule[] extended = Arrays.copyOf(rules, rules.length + 1);
+    extended[rules.length] = rule;
+    rules = extended;
+  }
+
+
+  public synchronized void remove(PostingRule rule) {
+    rules = Arrays.stream(rules)
+        .filter(r -> r != rule)
+        .toArray(PostingRule[]::new);
+  }
+
+
+  public boolean isEmpty() {
+    return rules.length == 0;
+  }
+
+
+  void check(Account account, Transaction transaction) throws TransactionRejectedException {
+    PostingRule[] current = rules;
+
+    for (int i = 0; i < current.length; i++) {
+      current[i].check(account, transaction);
+    }
+  }
+
+
+  void posted(Account account, Transaction transaction) {
+    PostingRule[] current = rules;
+
+    for (int i = 0; i < current.length; i++) {
+      current[i].posted(account, transaction);
+    }
+  }
+
+}
@@ -0,0 +1,111 @@
+package de.raywo.banking.domain;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Vergibt für wiederkehrende Verwendungszwecke ("Einzahlung", "Miete", ...)
+ * eine fortlaufende Nummer, sodass ein {@link TransactionLog} je Buchung nur
+ * einen {@code int} statt eines {@link String}s speichern muss.
+ * <p>
+ * Ein Zweck wird erst aufgenommen, wenn er {@link #ADMISSION_THRESHOLD}-mal
+ * vorkam; einmalige Texte wie Rechnungsnummern belegen so keine der
+ * {@link #MAX_ENTRIES} Nummern. Gezählt wird in einem Count-Min-Sketch aus
+ * vier Zeilen sättigender Zähler, die regelmäßig halbiert werden, damit nur
+ * zuletzt häufige Zwecke die Schwelle erreichen. Für nicht aufgenommene Zwecke
+ * liefert {@link #idOf(String)} {@code -1}, und der Aufrufer muss den Text
+ * selbst aufbewahren.
+ * <p>
+ * Jede Bank hält ihr eigenes Wörterbuch und gibt es ihren Konten; ein
+ * Primärsystem und ein Standby im selben Prozess teilen sich so keine
+ * Nummern. Ein {@link TransactionLog} ohne Wörterbuch speichert alle Zwecke
+ * als Text.
+ */
+public final class PurposeDictionary {
+
+  public static final int MAX_ENTRIES = 1 << 16;
+  public static final int ADMISSION_THRESHOLD = 3;
+
+  private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+  private static final int COUNTERS = 1 << 16;
+  private static final int AGING_PERIOD = COUNTERS / 2;
+
+  private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+  private volatile String[] purposes = new String[64];
+  private int size;
+  private final byte[] counts = new byte[SEEDS.length * COUNTERS];
+  private int misses;
+
+
+  public int idOf(String purpose) {
+    Integer id = ids.get(purpose);
+    if (id != null) {
+      return id;
+    }
+
+    return register(purpose);
+  }
+
+
+  public String purposeOf(int id) {
+    return purposes[id];
+  }
+
+
+  public synchronized int size() {
+    return size;
+  }
+
+
+  private synchronized int register(String purpose) {
+    Integer id = ids.get(purpose);
+    if (id != null) {
+      return id;
+    }
+
+    if (size == MAX_ENTRIES || !admit(purpose)) {
+      return -1;
+    }
+
+    String[] current = purposes;
+    if (size == current.length) {
+      current = Arrays.copyOf(current, current.length * 2);
+    }
+
+    current[size] = purpose;
+    purposes = current;
+    ids.put(purpose, size);
+
+    return size++;
+  }
+
+
+  /**
+   * Zählt ein Vorkommen eines noch unbekannten Zwecks und meldet, ob er die
+   * Schwelle erreicht hat.
+   */
+  private boolean admit(String purpose) {
+    int frequency = Byte.MAX_VALUE;
+
+    for (int row = 0; row < SEEDS.length; row++) {
+      int hash = (purpose.hashCode() + row) * SEEDS[row];
+      int slot = row * COUNTERS + ((hash ^ hash >>> 16) & (COUNTERS - 1));
+
+      if (counts[slot] < Byte.MAX_VALUE) {
+        counts[slot]++;
+      }
+      frequency = Math.min(frequency, counts[slot]);
+    }
+
+    if (++misses >= AGING_PERIOD) {
+      for (int i = 0; i < counts.length; i++) {
+        counts[i] >>= 1;
+      }
+      misses = 0;
+    }
+
+    return frequency >= ADMISSION_THRESHOLD;
+  }
+
+}
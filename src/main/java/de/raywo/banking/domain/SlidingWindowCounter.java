@@ -0,0 +1,93 @@
+package de.raywo.banking.domain;
+
+import java.time.Duration;
+
+/**
+ * Zählt Ereignisse und deren Summe über ein gleitendes Zeitfenster.
+ * <p>
+ * Das Fenster ist in eine feste Anzahl von Zeitscheiben (Buckets) aufgeteilt,
+ * die als Ringpuffer verwaltet werden. Beim Fortschreiten der Zeit werden nur
+ * die abgelaufenen Buckets geleert und von den laufenden Summen abgezogen.
+ * Abfragen und Erfassen sind dadurch unabhängig von der Anzahl der erfassten
+ * Ereignisse und erzeugen keine Objekte.
+ */
+public class SlidingWindowCounter {
+
+  private final long bucketMillis;
+  private final long[] bucketIds;
+  private final long[] counts;
+  private final long[] sums;
+
+  private long currentBucket = Long.MIN_VALUE;
+  private long totalCount;
+  private long totalSum;
+
+
+  public SlidingWindowCounter(Duration window, int buckets) {
+    if (buckets <= 0) {
+      throw new IllegalArgumentException("Die Anzahl der Buckets muss positiv sein.");
+    }
+
+    this.bucketMillis = Math.max(1L, window.toMillis() / buckets);
+    this.bucketIds = new long[buckets];
+    this.counts = new long[buckets];
+    this.sums = new long[buckets];
+  }
+
+
+  public synchronized void record(long epochMillis, long value) {
+    long bucket = Math.floorDiv(epochMillis, bucketMillis);
+    advanceTo(bucket);
+
+    if (bucket <= currentBucket - bucketIds.length) {
+      return;
+    }
+
+    int slot = slotOf(bucket);
+    if (bucketIds[slot] != bucket) {
+      return;
+    }
+
+    counts[slot]++;
+    sums[slot] += value;
+    totalCount++;
+    totalSum += value;
+  }
+
+
+  public synchronized long count(long epochMillis) {
+    advanceTo(Math.floorDiv(epochMillis, bucketMillis));
+    return totalCount;
+  }
+
+
+  public synchronized long sum(long epochMillis) {
+    advanceTo(Math.floorDiv(epochMillis, bucketMillis));
+    return totalSum;
+  }
+
+
+  private void advanceTo(long bucket) {
+    if (bucket <= currentBucket) {
+      return;
+    }
+
+    long first = Math.max(currentBucket + 1, bucket - bucketIds.length + 1);
+    for (long b = first; b <= bucket; b++) {
+      int slot = slotOf(b);
+      totalCount -= counts[slot];
+      totalSum -= sums[slot];
+      counts[slot] = 0;
+      sums[slot] = 0;
+      bucketIds[slot] = b;
+    }
+
+    currentBucket = bucket;
+  }
+
+
+  private int slotOf(long bucket) {
+    return (int) Math.floorMod(bucket, (long) bucketIds.length);
+  }
+
+}
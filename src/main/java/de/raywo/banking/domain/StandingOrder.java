@@ -0,0 +1,185 @@
+package de.raywo.banking.domain;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.Period;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import java.util.Objects;
+import java.util.UUID;
+
+public class StandingOrder implements Serializable, Identifiable<UUID> {
+
+  private final UUID id;
+  private final String sourceIban;
+  private final String targetIban;
+  private final Money amount;
+  private final String purpose;
+  private final ZonedDateTime firstExecution;
+  private final Period interval;
+  private long executions;
+  private boolean active;
+
+
+  public StandingOrder(String sourceIban, String targetIban, Money amount, String purpose,
+                       ZonedDateTime firstExecution, Period interval) {
+    if (amount.amount().compareTo(BigDecimal.ZERO) <= 0) {
+      throw new InvalidAmountException("Der Betrag eines Dauerauftrags muss positiv sein.");
+    }
+
+    if (interval.isZero() || interval.isNegative()) {
+      throw new IllegalArgumentException("Das Intervall eines Dauerauftrags muss positiv sein.");
+    }
+
+    this.id = UUID.randomUUID();
+    this.sourceIban = Objects.requireNonNull(sourceIban);
+    this.targetIban = Objects.requireNonNull(targetIban);
+    this.amount = amount;
+    this.purpose = purpose;
+    this.firstExecution = Objects.requireNonNull(firstExecution);
+    this.interval = interval;
+    this.executions = 0;
+    this.active = true;
+  }
+
+
+  @Override
+  public UUID getId() {
+    return id;
+  }
+
+
+  public String getSourceIban() {
+    return sourceIban;
+  }
+
+
+  public String getTargetIban() {
+    return targetIban;
+  }
+
+
+  public Money getAmount() {
+    return amount;
+  }
+
+
+  public String getPurpose() {
+    return purpose;
+  }
+
+
+  public Period getInterval() {
+    return interval;
+  }
+
+
+  public long getExecutions() {
+    return executions;
+  }
+
+
+  public boolean isActive() {
+    return active;
+  }
+
+
+  public void cancel() {
+    this.active = false;
+  }
+
+
+  /**
+   * Der nächste Ausführungszeitpunkt. Er wird immer vom ersten Termin aus
+   * berechnet, damit z. B. ein Auftrag zum 31. nach einem kurzen Monat nicht
+   * dauerhaft auf den 28. rutscht.
+   */
+  public Instant getNextExecution() {
+    return executionTime(executions);
+  }
+
+
+  /**
+   * Der Termin der letzten gezählten Ausführung oder {@code null}, wenn der
+   * Auftrag noch nie ausgeführt wurde.
+   */
+  public Instant getLastExecution() {
+    return executions == 0 ? null : executionTime(executions - 1);
+  }
+
+
+  public Withdrawal withdrawalFor(Instant executionTime) {
+    return new Withdrawal(sourceIban, purpose, amount, executionTime);
+  }
+
+
+  public Deposit depositFor(Instant executionTime) {
+    return new Deposit(targetIban, purpose, amount, executionTime);
+  }
+
+
+  /**
+   * Die Gutschrift auf dem Auftraggeberkonto, wenn der Betrag nach der
+   * Abbuchung nicht beim Empfänger ankommt.
+   */
+  public Deposit refundFor(Instant executionTime) {
+    return new Deposit(sourceIban, purpose == null ? "Rückbuchung" : "Rückbuchung: " + purpose, amount, executionTime);
+  }
+
+
+  public void advance() {
+    executions++;
+  }
+
+
+  /**
+   * Nimmt die letzte gezählte Ausführung zurück. Nur für den Abgleich nach
+   * einem Neustart, wenn zu ihr keine Buchung gespeichert wurde.
+   */
+  public void rewind() {
+    if (executions == 0) {
+      throw new IllegalStateException("Der Dauerauftrag wurde noch nie ausgeführt.");
+    }
+
+    executions--;
+  }
+
+
+  private Instant executionTime(long execution) {
+    return firstExecution.plus(interval.multipliedBy(Math.toIntExact(execution))).toInstant();
+  }
+
+
+  @Override
+  public boolean equals(Object o) {
+    if (o == null || getClass() != o.getClass()) return false;
+
+    StandingOrder that = (StandingOrder) o;
+    return id.equals(that.id);
+  }
+
+
+  @Override
+  public int hashCode() {
+    return id.hashCode();
+  }
+
+
+  @Override
+  public String toString() {
+    String next = DateTimeFormatter
+        .ofLocalizedDateTime(FormatStyle.MEDIUM)
+        .format(ZonedDateTime.ofInstant(getNextExecution(), firstExecution.getZone()));
+
+    return "[" + id.toString().substring(0, 8) + "] " +
+        sourceIban + " -> " + targetIban +
+        ": " + amount +
+        " alle " + interval +
+        ", nächste Ausführung: " + next +
+        ", VWZ: " + purpose +
+        (active ? "" : " (gelöscht)");
+  }
+
+}
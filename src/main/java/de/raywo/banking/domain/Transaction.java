@@ -12,6 +12,7 @@ sealed public abstract class Transaction implements Serializable
   private final String iban;
   private final String purpose;
   private final Money amount;
+  private final long amountMinorUnits;
   private final Instant timestamp;
 
 
@@ -24,6 +25,7 @@ sealed public abstract class Transaction implements Serializable
     this.iban = iban;
     this.purpose = purpose;
     this.amount = amount;
+    this.amountMinorUnits = amount == null ? 0 : amount.minorUnits();
     this.timestamp = timestamp;
   }
 
@@ -43,6 +45,15 @@ sealed public abstract class Transaction implements Serializable
   }
 
 
+  /**
+   * Der Betrag in Cent; einmal beim Anlegen berechnet, damit Regeln und
+   * Verlauf ihn ohne neue Objekte lesen.
+   */
+  long getAmountMinorUnits() {
+    return amountMinorUnits;
+  }
+
+
   public Instant getTimestamp() {
     return timestamp;
   }
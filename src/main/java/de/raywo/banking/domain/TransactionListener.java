@@ -0,0 +1,38 @@
+package de.raywo.banking.domain;
+
+/**
+ * Wird von einem {@link Account} nach jeder erfolgreich gebuchten
+ * Transaktion benachrichtigt. {@code position} ist der Index der Transaktion
+ * in der Historie des Kontos.
+ * <p>
+ * {@link #transactionPosted} läuft unter der Sperre des Kontos und darf
+ * nicht blockieren. {@link #postingsCompleted} folgt, sobald das Konto die
+ * Sperre wieder freigegeben hat, auch wenn die Buchung abgelehnt wurde.
+ * <p>
+ * {@link #holdPlaced} und {@link #holdRemoved} melden jede Vormerkung, die
+ * auf dem Konto angelegt bzw. freigegeben, gebucht oder zurückgenommen wird,
+ * ebenfalls unter der Sperre des Kontos. {@link #stateChanged} folgt nach
+ * Freigabe der Sperre auf jede Änderung an Vormerkungen, Status,
+ * Dispositionsrahmen, Zinssatz oder Inhaber.
+ */
+public interface TransactionListener {
+
+  void transactionPosted(Account account, Transaction transaction, int position);
+
+
+  default void postingsCompleted(Account account) {
+  }
+
+
+  default void holdPlaced(Account account, AuthorizationHold hold) {
+  }
+
+
+  default void holdRemoved(Account account, AuthorizationHold hold) {
+  }
+
+
+  default void stateChanged(Account account) {
+  }
+
+}
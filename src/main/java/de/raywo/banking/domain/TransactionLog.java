@@ -0,0 +1,284 @@
+package de.raywo.banking.domain;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Die Buchungshistorie eines Kontos in spaltenweiser Ablage.
+ * <p>
+ * Statt eines {@link Transaction}-Objekts je Buchung werden Betrag (in
+ * Cent), Zeitpunkt (in Mikrosekunden seit der Epoche), Art und die Nummer des
+ * Verwendungszwecks aus dem {@link PurposeDictionary} in parallelen Arrays
+ * gehalten. IBAN und Währung sind für alle Buchungen eines Kontos gleich und
+ * werden nur einmal gespeichert. {@link Deposit}- und {@link Withdrawal}-Objekte
+ * entstehen erst beim Lesen.
+ * <p>
+ * Geschrieben wird nur unter der Sperre des Kontos, gelesen auch ohne. Die
+ * Spalten wachsen nur, und {@code size} wird als letztes und volatil
+ * geschrieben: Wer {@code size} liest, sieht danach Arrays, die mindestens so
+ * lang und bis dahin befüllt sind.
+ */
+public class TransactionLog implements Serializable {
+
+  private static final byte DEPOSIT = 0;
+  private static final byte WITHDRAWAL = 1;
+  private static final int NULL_PURPOSE = -1;
+  private static final long[] NO_LONGS = new long[0];
+  private static final int[] NO_INTS = new int[0];
+  private static final byte[] NO_BYTES = new byte[0];
+
+  private final String iban;
+  private Currency currency;
+  private transient volatile int size;
+  private transient long[] amounts = NO_LONGS;
+  private transient long[] timestamps = NO_LONGS;
+  private transient byte[] types = NO_BYTES;
+  private transient volatile PurposeColumn purposes = new PurposeColumn(null);
+  private transient List<Transaction> view;
+
+
+  public TransactionLog(String iban) {
+    this.iban = Objects.requireNonNull(iban);
+  }
+
+
+  public int size() {
+    return size;
+  }
+
+
+  void append(Transaction transaction) {
+    Money amount = transaction.getAmount();
+
+    if (currency == null) {
+      currency = amount.currency();
+    } else if (!currency.equals(amount.currency())) {
+      throw new CurrencyMismatchException("Unerwartete Währung: " + amount.currency()
+          + " (erwartet: " + currency + ")");
+    }
+
+    int index = size;
+    ensureCapacity(index + 1);
+
+    PurposeColumn column = purposes;
+    amounts[index] = transaction.getAmountMinorUnits();
+    timestamps[index] = toEpochMicros(transaction.getTimestamp());
+    types[index] = transaction instanceof Deposit ? DEPOSIT : WITHDRAWAL;
+    column.ids[index] = column.encode(transaction.getPurpose());
+    size = index + 1;
+  }
+
+
+  /**
+   * Kodiert alle Zwecke mit {@code dictionary} neu. Die neue Spalte wird erst
+   * vollständig aufgebaut und dann als Ganzes veröffentlicht, sodass Leser
+   * Nummer und Wörterbuch immer zusammenpassend sehen.
+   */
+  void usePurposeDictionary(PurposeDictionary dictionary) {
+    PurposeColumn current = purposes;
+    if (current.dictionary == dictionary) {
+      return;
+    }
+
+    int count = size;
+    PurposeColumn column = new PurposeColumn(dictionary);
+    column.ids = new int[amounts.length];
+
+    for (int i = 0; i < count; i++) {
+      column.ids[i] = column.encode(current.decode(current.ids[i]));
+    }
+
+    purposes = column;
+  }
+
+
+  public Transaction get(int index) {
+    Objects.checkIndex(index, size);
+
+    Money amount = Money.ofMinorUnits(amounts[index], currency);
+    Instant timestamp = fromEpochMicros(timestamps[index]);
+    String purpose = getPurposeUnchecked(index);
+
+    return types[index] == DEPOSIT
+        ? new Deposit(iban, purpose, amount, timestamp)
+        : new Withdrawal(iban, purpose, amount, timestamp);
+  }
+
+
+  public long getAmountMinorUnits(int index) {
+    Objects.checkIndex(index, size);
+    return amounts[index];
+  }
+
+
+  public long getTimestampMicros(int index) {
+    Objects.checkIndex(index, size);
+    return timestamps[index];
+  }
+
+
+  public boolean isDeposit(int index) {
+    Objects.checkIndex(index, size);
+    return types[index] == DEPOSIT;
+  }
+
+
+  public String getPurpose(int index) {
+    Objects.checkIndex(index, size);
+    return getPurposeUnchecked(index);
+  }
+
+
+  public List<Transaction> asList() {
+    if (view == null) {
+      view = new View();
+    }
+
+    return view;
+  }
+
+
+  public static long toEpochMicros(Instant instant) {
+    return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000L), instant.getNano() / 1_000L);
+  }
+
+
+  public static Instant fromEpochMicros(long micros) {
+    return Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), Math.floorMod(micros, 1_000_000L) * 1_000L);
+  }
+
+
+  private String getPurposeUnchecked(int index) {
+    PurposeColumn column = purposes;
+    return column.decode(column.ids[index]);
+  }
+
+
+  private void ensureCapacity(int required) {
+    if (required <= amounts.length) {
+      return;
+    }
+
+    int capacity = Math.max(8, Math.max(required, amounts.length + (amounts.length >> 1)));
+    amounts = Arrays.copyOf(amounts, capacity);
+    timestamps = Arrays.copyOf(timestamps, capacity);
+    types = Arrays.copyOf(types, capacity);
+
+    PurposeColumn column = purposes;
+    column.ids = Arrays.copyOf(column.ids, capacity);
+  }
+
+
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    out.defaultWriteObject();
+    out.writeInt(size);
+
+    for (int i = 0; i < size; i++) {
+      out.writeByte(types[i]);
+      out.writeLong(amounts[i]);
+      out.writeLong(timestamps[i]);
+      out.writeObject(getPurposeUnchecked(i));
+    }
+  }
+
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+
+    int count = in.readInt();
+    amounts = NO_LONGS;
+    timestamps = NO_LONGS;
+    types = NO_BYTES;
+    purposes = new PurposeColumn(null);
+    ensureCapacity(count);
+
+    PurposeColumn column = purposes;
+    for (int i = 0; i < count; i++) {
+      types[i] = in.readByte();
+      amounts[i] = in.readLong();
+      timestamps[i] = in.readLong();
+      column.ids[i] = column.encode((String) in.readObject());
+    }
+
+    size = count;
+  }
+
+
+  /**
+   * Die Spalte der Verwendungszwecke zusammen mit dem Wörterbuch, aus dem
+   * ihre Nummern stammen. Nicht aufgenommene Zwecke liegen als Text in
+   * {@code literals} und werden mit negativen Nummern adressiert.
+   */
+  private static final class PurposeColumn {
+
+    private final PurposeDictionary dictionary;
+    private int[] ids = NO_INTS;
+    private List<String> literals;
+
+
+    private PurposeColumn(PurposeDictionary dictionary) {
+      this.dictionary = dictionary;
+    }
+
+
+    private int encode(String purpose) {
+      if (purpose == null) {
+        return NULL_PURPOSE;
+      }
+
+      int id = dictionary == null ? -1 : dictionary.idOf(purpose);
+      if (id >= 0) {
+        return id;
+      }
+
+      if (literals == null) {
+        literals = new ArrayList<>();
+      }
+
+      literals.add(purpose);
+      return -1 - literals.size();
+    }
+
+
+    private String decode(int id) {
+      if (id >= 0) {
+        return dictionary.purposeOf(id);
+      }
+
+      if (id == NULL_PURPOSE) {
+        return null;
+      }
+
+      return literals.get(-2 - id);
+    }
+
+  }
+
+
+  private class View extends AbstractList<Transaction> implements RandomAccess {
+
+    @Override
+    public Transaction get(int index) {
+      return TransactionLog.this.get(index);
+    }
+
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+  }
+
+}
@@ -0,0 +1,9 @@
+package de.raywo.banking.domain;
+
+public class TransactionRejectedException extends Exception {
+
+  public TransactionRejectedException(String message) {
+    super(message);
+  }
+
+}
@@ -0,0 +1,172 @@
+package de.raywo.banking.domain;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Begrenzt Anzahl und Summe der Auszahlungen je Konto innerhalb eines
+ * gleitenden Zeitfensters, z. B. "höchstens 10 Auszahlungen oder 2.000 €
+ * pro Stunde".
+ * <p>
+ * Jedes Konto erhält einen eigenen {@link SlidingWindowCounter}. Wird ein
+ * Konto zum ersten Mal geprüft, wird der Zähler einmalig aus den Buchungen
+ * innerhalb des Fensters befüllt; danach muss die Historie nicht mehr
+ * durchsucht werden.
+ * <p>
+ * Das Fenster läuft nach der Uhr des Servers, nicht nach dem Zeitstempel der
+ * Buchung: Eine Auszahlung zählt ab dem Moment, in dem sie gebucht wird. Vor-
+ * oder rückdatierte Buchungen können das Fenster so weder verschieben noch
+ * an ihm vorbei gebucht werden. Nur beim Befüllen aus der Historie bleibt
+ * nichts als der Zeitstempel; Zeitpunkte in der Zukunft zählen dort als
+ * jetzt. Zähler, deren Fenster leer ist, werden einmal je Fensterlänge
+ * verworfen, sodass nur Konten mit Auszahlungen im Fenster Speicher belegen.
+ */
+public class WithdrawalVelocityRule implements PostingRule {
+
+  private static final int DEFAULT_BUCKETS = 60;
+
+  private final long maxCount;
+  private final Money maxAmount;
+  private final long maxAmountMinorUnits;
+  private final Duration window;
+  private final int buckets;
+  private final Clock clock;
+  private final Map<String, SlidingWindowCounter> counters = new ConcurrentHashMap<>();
+  private final AtomicLong nextSweep;
+
+
+  public WithdrawalVelocityRule(long maxCount, Money maxAmount, Duration window) {
+    this(maxCount, maxAmount, window, DEFAULT_BUCKETS);
+  }
+
+
+  public WithdrawalVelocityRule(long maxCount, Money maxAmount, Duration window, int buckets) {
+    this(maxCount, maxAmount, window, buckets, Clock.systemUTC());
+  }
+
+
+  public WithdrawalVelocityRule(long maxCount, Money maxAmount, Duration window, int buckets, Clock clock) {
+    this.maxCount = maxCount;
+    this.maxAmount = Objects.requireNonNull(maxAmount);
+    this.maxAmountMinorUnits = maxAmount.minorUnits();
+    this.window = Objects.requireNonNull(window);
+    this.buckets = buckets;
+    this.clock = Objects.requireNonNull(clock);
+    this.nextSweep = new AtomicLong(clock.millis() + window.toMillis());
+  }
+
+
+  /**
+   * Die Anzahl der Konten, für die gerade ein Zähler gehalten wird.
+   */
+  public int getTrackedAccounts() {
+    return counters.size();
+  }
+
+
+  @Override
+  public void check(Account account, Transaction transaction) throws TransactionRejectedException {
+    if (!(transaction instanceof Withdrawal)) {
+      return;
+    }
+
+    long now = clock.millis();
+    sweepIfDue(now);
+
+    SlidingWindowCounter counter = counterFor(account, now);
+
+    if (counter.count(now) + 1 > maxCount) {
+      throw new TransactionRejectedException("Maximale Anzahl an Auszahlungen im Zeitraum von "
+          + window + " erreicht (" + maxCount + ").");
+    }
+
+    if (!transaction.getAmount().currency().equals(maxAmount.currency())) {
+      return;
+    }
+
+    if (counter.sum(now) + transaction.getAmountMinorUnits() > maxAmountMinorUnits) {
+      throw new TransactionRejectedException("Maximaler Auszahlungsbetrag im Zeitraum von "
+          + window + " überschritten (" + maxAmount + ").");
+    }
+  }
+
+
+  @Override
+  public void posted(Account account, Transaction transaction) {
+    if (!(transaction instanceof Withdrawal)) {
+      return;
+    }
+
+    SlidingWindowCounter counter = counters.get(account.getIban());
+    if (counter == null) {
+      return;
+    }
+
+    // Wurde der Zähler inzwischen verworfen, liest der nächste check die
+    // Auszahlung beim Befüllen aus der Historie.
+    synchronized (counter) {
+      if (counters.get(account.getIban()) == counter) {
+        counter.record(clock.millis(), transaction.getAmountMinorUnits());
+      }
+    }
+  }
+
+
+  private SlidingWindowCounter counterFor(Account account, long now) {
+    SlidingWindowCounter counter = counters.get(account.getIban());
+    if (counter != null) {
+      return counter;
+    }
+
+    return counters.computeIfAbsent(account.getIban(), iban -> seededCounter(account, now));
+  }
+
+
+  /**
+   * Verwirft höchstens einmal je Fensterlänge alle Zähler ohne Auszahlungen im
+   * Fenster. Prüfen und Entfernen geschehen unter der Sperre des Zählers,
+   * damit keine gleichzeitige Erfassung verloren geht.
+   */
+  private void sweepIfDue(long now) {
+    long due = nextSweep.get();
+    if (now < due || !nextSweep.compareAndSet(due, now + window.toMillis())) {
+      return;
+    }
+
+    for (Map.Entry<String, SlidingWindowCounter> entry : counters.entrySet()) {
+      SlidingWindowCounter counter = entry.getValue();
+
+      synchronized (counter) {
+        if (counter.count(now) == 0) {
+          counters.remove(entry.getKey(), counter);
+        }
+      }
+    }
+  }
+
+
+  private SlidingWindowCounter seededCounter(Account account, long now) {
+    SlidingWindowCounter counter = new SlidingWindowCounter(window, buckets);
+    TransactionLog history = account.getTransactionLog();
+    long windowStart = (now - window.toMillis()) * 1_000;
+
+    int first = history.size();
+    while (first > 0 && history.getTimestampMicros(first - 1) > windowStart) {
+      first--;
+    }
+
+    for (int i = first; i < history.size(); i++) {
+      if (!history.isDeposit(i)) {
+        counter.record(Math.min(Math.floorDiv(history.getTimestampMicros(i), 1_000), now),
+            history.getAmountMinorUnits(i));
+      }
+    }
+
+    return counter;
+  }
+
+}
@@ -9,7 +9,7 @@ public abstract class AbstractMapBasedRepository<Id, T extends Identifiable<Id>>
     implements Repository<Id, T> {
 
   protected final Storage<Id, T> storage;
-  protected Map<Id, T> entityMap = new HashMap<>();
+  protected Map<Id, T> entityMap = createEntityMap();
 
 
   public AbstractMapBasedRepository(Storage<Id, T> storage) {
@@ -18,11 +18,11 @@ public abstract class AbstractMapBasedRepository<Id, T extends Identifiable<Id>>
 
 
   public Optional<T> findById(Id id) {
-    return Optional.ofNullable(entityMap.get(id));
+    return id == null ? Optional.empty() : Optional.ofNullable(entityMap.get(id));
   }
 
 
-  public void save(T entity) {
+  public synchronized void save(T entity) {
     entityMap.put(entity.getId(), entity);
   }
 
@@ -32,12 +32,12 @@ public abstract class AbstractMapBasedRepository<Id, T extends Identifiable<Id>>
   }
 
 
-  public void delete(T entity) {
+  public synchronized void delete(T entity) {
     entityMap.remove(entity.getId());
   }
 
 
-  public void deleteAll() {
+  public synchronized void deleteAll() {
     entityMap.clear();
   }
 
@@ -49,13 +49,31 @@ public abstract class AbstractMapBasedRepository<Id, T extends Identifiable<Id>>
 
   @Override
   public void persist() throws IOException {
-    storage.saveAll(entityMap);
+    storage.saveAll(snapshot());
   }
 
 
   @Override
-  public void initialize() throws IOException, ClassNotFoundException {
-    this.entityMap = storage.readAll();
+  public synchronized void initialize() throws IOException, ClassNotFoundException {
+    Map<Id, T> loaded = createEntityMap();
+    loaded.putAll(storage.readAll());
+    this.entityMap = loaded;
+  }
+
+
+  /**
+   * Kopiert die Entitäten unter der Sperre der schreibenden Methoden, damit
+   * das Speichern parallel zu weiteren Änderungen laufen kann.
+   */
+  protected synchronized Map<Id, T> snapshot() {
+    Map<Id, T> copy = createEntityMap();
+    copy.putAll(entityMap);
+    return copy;
+  }
+
+
+  protected Map<Id, T> createEntityMap() {
+    return new HashMap<>();
   }
 
 }
@@ -2,10 +2,24 @@ package de.raywo.banking.persistence;
 
 import de.raywo.banking.domain.Account;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 public class AccountRepository extends AbstractMapBasedRepository<String, Account> {
 
   public AccountRepository(Storage<String, Account> storage) {
     super(storage);
   }
 
+
+  /**
+   * Konten werden bei jeder Buchung über ihre IBAN als {@code String}
+   * nachgeschlagen. Die {@link ConcurrentHashMap} nutzt dafür den im String
+   * zwischengespeicherten Hash und ist ohne Sperre lesbar.
+   */
+  @Override
+  protected Map<String, Account> createEntityMap() {
+    return new ConcurrentHashMap<>();
+  }
+
 }
@@ -0,0 +1,220 @@
+package de.raywo.banking.persistence;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Schreibt mehrere Bestände nebenläufig auf einem eigenen I/O-Executor.
+ * <p>
+ * Es läuft höchstens ein Schreibvorgang; Anforderungen, die währenddessen
+ * eintreffen, werden zu genau einem Folgevorgang zusammengefasst. Schreibende
+ * melden ihre Änderungen mit {@link #recordChanges(long)}; übersteigt die Zahl
+ * der noch nicht gespeicherten Änderungen die Schwelle, blockiert
+ * {@link #awaitCapacity()}, bis ein Schreibvorgang sie abgebaut hat.
+ * Schlagen {@value #MAX_FAILED_WRITES} Schreibvorgänge in Folge fehl, wirft
+ * {@link #awaitCapacity()} stattdessen den letzten Fehler, bis wieder ein
+ * Schreibvorgang gelingt.
+ */
+public class AsyncPersister implements AutoCloseable {
+
+  public static final long DEFAULT_THRESHOLD = 100_000;
+  public static final int MAX_FAILED_WRITES = 3;
+
+  private static final long RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+  private final List<Task> tasks;
+  private final ExecutorService io;
+  private final long threshold;
+  private final AtomicLong pendingChanges = new AtomicLong();
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition capacity = lock.newCondition();
+  private CompletableFuture<Void> running;
+  private CompletableFuture<Void> queued;
+  private int failedWrites;
+  private IOException lastFailure;
+
+
+  public AsyncPersister(List<Task> tasks, long threshold) {
+    if (tasks.isEmpty() || threshold <= 0) {
+      throw new IllegalArgumentException("Ungültige Konfiguration der Persistenz.");
+    }
+
+    this.tasks = List.copyOf(tasks);
+    this.threshold = threshold;
+
+    AtomicInteger threads = new AtomicInteger();
+    this.io = Executors.newFixedThreadPool(this.tasks.size(), runnable -> {
+      Thread thread = new Thread(runnable, "persistence-io-" + threads.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+
+  public long getPendingChanges() {
+    return pendingChanges.get();
+  }
+
+
+  public long getThreshold() {
+    return threshold;
+  }
+
+
+  public void recordChanges(long changes) {
+    pendingChanges.addAndGet(changes);
+  }
+
+
+  /**
+   * Liefert ein Future, das abgeschlossen wird, sobald alle bis zu diesem
+   * Aufruf gemeldeten Änderungen geschrieben sind.
+   */
+  public CompletableFuture<Void> persistAsync() {
+    lock.lock();
+    try {
+      if (running == null) {
+        return startWrite();
+      }
+
+      if (queued == null) {
+        queued = new CompletableFuture<>();
+      }
+
+      return queued;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+
+  /**
+   * Blockiert, solange mehr Änderungen als die Schwelle ungespeichert sind,
+   * und stößt dabei bei Bedarf einen Schreibvorgang an.
+   *
+   * @throws UncheckedIOException wenn die letzten Schreibvorgänge alle
+   *                              fehlgeschlagen sind; im Hintergrund wird es
+   *                              weiter versucht
+   */
+  public void awaitCapacity() {
+    if (pendingChanges.get() <= threshold) {
+      return;
+    }
+
+    lock.lock();
+    try {
+      while (pendingChanges.get() > threshold) {
+        if (running == null) {
+          startWrite();
+        }
+
+        if (failedWrites >= MAX_FAILED_WRITES) {
+          throw new UncheckedIOException(
+              "Die letzten " + failedWrites + " Schreibvorgänge sind fehlgeschlagen.", lastFailure);
+        }
+
+        capacity.awaitNanos(RETRY_NANOS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+
+  @Override
+  public void close() {
+    io.shutdown();
+  }
+
+
+  private CompletableFuture<Void> startWrite() {
+    long changes = pendingChanges.get();
+
+    CompletableFuture<?>[] writes = tasks.stream()
+        .map(task -> CompletableFuture.runAsync(() -> run(task), io))
+        .toArray(CompletableFuture[]::new);
+
+    CompletableFuture<Void> write = CompletableFuture.allOf(writes);
+    running = write;
+    write.whenComplete((ignored, failure) -> finished(changes, failure));
+
+    return write;
+  }
+
+
+  private void finished(long changes, Throwable failure) {
+    lock.lock();
+    try {
+      if (failure == null) {
+        pendingChanges.addAndGet(-changes);
+        failedWrites = 0;
+        lastFailure = null;
+      } else {
+        failedWrites++;
+        lastFailure = ioFailureOf(failure);
+      }
+
+      running = null;
+      capacity.signalAll();
+
+      CompletableFuture<Void> next = queued;
+      queued = null;
+
+      if (next != null) {
+        startWrite().whenComplete((ignored, error) -> {
+          if (error == null) {
+            next.complete(null);
+          } else {
+            next.completeExceptionally(error);
+          }
+        });
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+
+  private static IOException ioFailureOf(Throwable failure) {
+    Throwable cause = failure;
+    while (cause instanceof CompletionException && cause.getCause() != null) {
+      cause = cause.getCause();
+    }
+
+    if (cause instanceof UncheckedIOException unchecked) {
+      return unchecked.getCause();
+    }
+
+    return new IOException(cause);
+  }
+
+
+  private static void run(Task task) {
+    try {
+      task.persist();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+
+  @FunctionalInterface
+  public interface Task {
+
+    void persist() throws IOException;
+
+  }
+
+}
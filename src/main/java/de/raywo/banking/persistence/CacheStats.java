@@ -0,0 +1,21 @@
+package de.raywo.banking.persistence;
+
+public record CacheStats(long hits, long misses, long evictions, long writesBehind, long residentWeight) {
+
+  public long requests() {
+    return hits + misses;
+  }
+
+
+  public double hitRate() {
+    return requests() == 0 ? 1.0 : (double) hits / requests();
+  }
+
+
+  @Override
+  public String toString() {
+    return String.format("Treffer: %,d, Fehlzugriffe: %,d (Trefferquote %.1f %%), Verdrängt: %,d, "
+        + "Nachgeschrieben: %,d, Gewicht: %,d", hits, misses, 100 * hitRate(), evictions, writesBehind, residentWeight);
+  }
+
+}
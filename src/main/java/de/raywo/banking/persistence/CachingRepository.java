@@ -0,0 +1,615 @@
+package de.raywo.banking.persistence;
+
+import de.raywo.banking.domain.Identifiable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToIntFunction;
+
+/**
+ * Ein Repository, das nur einen begrenzten Teil der Entitäten im Speicher
+ * hält und die übrigen bei Bedarf aus einem {@link KeyedStorage} lädt.
+ * <p>
+ * Die Verdrängung folgt W-TinyLFU: Neue Einträge kommen in ein kleines
+ * LRU-Fenster (1 % des Gewichts). Fällt ein Eintrag aus dem Fenster, tritt er
+ * gegen den ältesten Eintrag des Hauptbereichs an, und nur der laut
+ * {@link FrequencySketch} häufiger angefragte bleibt. Der Hauptbereich ist ein
+ * segmentiertes LRU aus Probe- und geschütztem Segment (80 %); ein zweiter
+ * Treffer befördert einen Eintrag ins geschützte Segment.
+ * <p>
+ * Mit {@link #save(Identifiable)} gespeicherte Entitäten gelten als geändert
+ * und werden beim Verdrängen von einem eigenen Thread nachgeschrieben. Wer
+ * eine geladene Entität an Ort und Stelle verändert, muss das mit
+ * {@link #markDirty(Identifiable)} melden; sonst gilt sie als unverändert und
+ * wird ohne Schreiben verdrängt. Die Meldung geht ohne die Sperre des Caches
+ * in eine nebenläufige Tabelle, die erst {@link #persist()} und die
+ * Verdrängung abarbeiten.
+ * <p>
+ * Eine verdrängte Entität wird beim nächsten Zugriff als neue Instanz
+ * geladen. Entitäten, die Aufrufer über längere Zeit halten und gleichzeitig
+ * verändern, gehören daher nicht in diesen Cache.
+ * <p>
+ * Gleichzeitige Fehlgriffe auf denselben Schlüssel teilen sich einen
+ * Ladevorgang und erhalten dieselbe Instanz. Wird die Entität während des
+ * Ladens gespeichert oder gelöscht, verwirft der Ladevorgang seinen Stand.
+ */
+public class CachingRepository<Id, T extends Identifiable<Id>> implements Repository<Id, T>, AutoCloseable {
+
+  private static final double WINDOW_SHARE = 0.01;
+  private static final double PROTECTED_SHARE = 0.8;
+
+  private final KeyedStorage<Id, T> store;
+  private final long maximumWeight;
+  private final long windowMaximum;
+  private final long protectedMaximum;
+  private final ToIntFunction<? super T> weigher;
+  private final FrequencySketch sketch;
+  private final Map<Id, Node> data = new HashMap<>();
+  private final LinkedHashMap<Id, Node> window = new LinkedHashMap<>();
+  private final LinkedHashMap<Id, Node> probation = new LinkedHashMap<>();
+  private final LinkedHashMap<Id, Node> protectedSegment = new LinkedHashMap<>();
+  private long windowWeight;
+  private long probationWeight;
+  private long protectedWeight;
+  private final Set<Id> keys = ConcurrentHashMap.newKeySet();
+  private final Map<Id, PendingWrite<T>> pendingWrites = new ConcurrentHashMap<>();
+  private final Map<Id, T> changed = new ConcurrentHashMap<>();
+  private final Map<Id, CompletableFuture<Optional<T>>> loading = new HashMap<>();
+  private final ExecutorService writer;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private final LongAdder writesBehind = new LongAdder();
+
+
+  public CachingRepository(KeyedStorage<Id, T> store, long maximumSize) {
+    this(store, maximumSize, entity -> 1);
+  }
+
+
+  public CachingRepository(KeyedStorage<Id, T> store, long maximumWeight, ToIntFunction<? super T> weigher) {
+    if (maximumWeight <= 0) {
+      throw new IllegalArgumentException("Das Höchstgewicht muss positiv sein: " + maximumWeight);
+    }
+
+    this.store = Objects.requireNonNull(store);
+    this.weigher = Objects.requireNonNull(weigher);
+    this.maximumWeight = maximumWeight;
+    this.windowMaximum = Math.max(1, (long) (maximumWeight * WINDOW_SHARE));
+    this.protectedMaximum = (long) ((maximumWeight - windowMaximum) * PROTECTED_SHARE);
+    this.sketch = new FrequencySketch(maximumWeight);
+    this.writer = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "cache-write-behind");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+
+  @Override
+  public Optional<T> findById(Id id) {
+    boolean counted = false;
+
+    while (true) {
+      CompletableFuture<Optional<T>> load;
+      boolean owner = false;
+
+      synchronized (this) {
+        Node node = data.get(id);
+
+        if (!counted) {
+          sketch.increment(id);
+          (node != null ? hits : misses).increment();
+          counted = true;
+        }
+
+        if (node != null) {
+          onHit(id, node);
+          return Optional.of(node.value);
+        }
+
+        load = loading.get(id);
+        if (load == null) {
+          load = new CompletableFuture<>();
+          loading.put(id, load);
+          owner = true;
+        }
+      }
+
+      Optional<T> result = owner ? load(id, load) : join(load);
+      if (result != null) {
+        return result;
+      }
+    }
+  }
+
+
+  /**
+   * Merkt eine an Ort und Stelle veränderte Entität zum Schreiben vor, ohne
+   * die Sperre des Caches zu nehmen. Reihenfolge und Gewicht im Cache passt
+   * erst das nächste {@link #persist()} an.
+   */
+  @Override
+  public void markDirty(T entity) {
+    Id id = entity.getId();
+    keys.add(id);
+    changed.put(id, entity);
+  }
+
+
+  @Override
+  public synchronized void save(T entity) {
+    Id id = entity.getId();
+    keys.add(id);
+    changed.remove(id);
+    sketch.increment(id);
+    supersede(id);
+
+    Node node = data.get(id);
+    if (node == null) {
+      insert(id, entity, true);
+      return;
+    }
+
+    node.value = entity;
+    node.dirty = true;
+    reweigh(node, weigher.applyAsInt(entity));
+    onHit(id, node);
+    evict();
+  }
+
+
+  /**
+   * Liefert alle Entitäten. Nicht geladene Entitäten werden erst beim
+   * Iterieren gelesen und nicht in den Cache aufgenommen.
+   */
+  @Override
+  public Collection<T> findAll() {
+    List<Id> snapshot = List.copyOf(keys);
+
+    return new AbstractCollection<>() {
+      @Override
+      public Iterator<T> iterator() {
+        return snapshot.stream()
+            .map(CachingRepository.this::peek)
+            .flatMap(Optional::stream)
+            .iterator();
+      }
+
+
+      @Override
+      public int size() {
+        return snapshot.size();
+      }
+    };
+  }
+
+
+  @Override
+  public synchronized void delete(T entity) {
+    Id id = entity.getId();
+    Node node = data.get(id);
+
+    if (node != null) {
+      remove(id, node);
+    }
+
+    keys.remove(id);
+    changed.remove(id);
+    supersede(id);
+    schedule(id, null);
+  }
+
+
+  @Override
+  public synchronized void deleteAll() {
+    data.clear();
+    window.clear();
+    probation.clear();
+    protectedSegment.clear();
+    windowWeight = 0;
+    probationWeight = 0;
+    protectedWeight = 0;
+    keys.clear();
+    changed.clear();
+    pendingWrites.clear();
+    loading.clear();
+
+    try {
+      awaitWriter();
+      store.deleteAll();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+
+  @Override
+  public int count() {
+    return keys.size();
+  }
+
+
+  /**
+   * Schreibt alle geänderten Einträge und wartet, bis auch die zuvor
+   * verdrängten geschrieben sind.
+   */
+  @Override
+  public void persist() throws IOException {
+    synchronized (this) {
+      for (Map.Entry<Id, T> entry : changed.entrySet()) {
+        Id id = entry.getKey();
+        T value = entry.getValue();
+        Node node = data.get(id);
+
+        if (changed.remove(id, value)) {
+          if (node != null && node.value == value) {
+            node.dirty = false;
+            reweigh(node, weigher.applyAsInt(value));
+          }
+          schedule(id, value);
+        }
+      }
+
+      evict();
+
+      for (Map.Entry<Id, Node> entry : data.entrySet()) {
+        if (entry.getValue().dirty) {
+          entry.getValue().dirty = false;
+          schedule(entry.getKey(), entry.getValue().value);
+        }
+      }
+    }
+
+    awaitWriter();
+
+    if (!pendingWrites.isEmpty()) {
+      throw new IOException("Nicht alle Einträge konnten geschrieben werden: " + pendingWrites.keySet());
+    }
+  }
+
+
+  @Override
+  public synchronized void initialize() throws IOException {
+    keys.clear();
+    keys.addAll(store.keys());
+  }
+
+
+  public CacheStats getStats() {
+    synchronized (this) {
+      return new CacheStats(
+          hits.sum(),
+          misses.sum(),
+          evictions.sum(),
+          writesBehind.sum(),
+          windowWeight + probationWeight + protectedWeight
+      );
+    }
+  }
+
+
+  public long getMaximumWeight() {
+    return maximumWeight;
+  }
+
+
+  @Override
+  public void close() throws IOException {
+    persist();
+    writer.shutdown();
+  }
+
+
+  /**
+   * Lädt eine Entität für alle gleichzeitig Wartenden. Liefert {@code null},
+   * wenn sie während des Ladens gespeichert oder gelöscht wurde; dann muss
+   * neu nachgeschlagen werden.
+   */
+  private Optional<T> load(Id id, CompletableFuture<Optional<T>> load) {
+    Optional<T> loaded;
+
+    try {
+      loaded = peek(id);
+    } catch (RuntimeException e) {
+      synchronized (this) {
+        loading.remove(id, load);
+      }
+      load.completeExceptionally(e);
+      throw e;
+    }
+
+    Optional<T> result = null;
+
+    synchronized (this) {
+      if (loading.remove(id, load)) {
+        Node node = data.get(id);
+
+        if (node != null) {
+          result = Optional.of(node.value);
+        } else {
+          loaded.ifPresent(value -> insert(id, value, false));
+          result = loaded;
+        }
+      }
+    }
+
+    load.complete(result);
+    return result;
+  }
+
+
+  private Optional<T> join(CompletableFuture<Optional<T>> load) {
+    try {
+      return load.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw e;
+    }
+  }
+
+
+  /**
+   * Entwertet einen laufenden Ladevorgang, dessen Stand durch ein Speichern
+   * oder Löschen überholt ist.
+   */
+  private void supersede(Id id) {
+    loading.remove(id);
+  }
+
+
+  /**
+   * Liest eine Entität, ohne sie in den Cache aufzunehmen. Gemeldete
+   * Änderungen und noch nicht nachgeschriebene Stände haben Vorrang vor dem
+   * Speicher.
+   */
+  private Optional<T> peek(Id id) {
+    synchronized (this) {
+      Node node = data.get(id);
+      if (node != null) {
+        return Optional.of(node.value);
+      }
+    }
+
+    T value = changed.get(id);
+    if (value != null) {
+      return Optional.of(value);
+    }
+
+    PendingWrite<T> pending = pendingWrites.get(id);
+    if (pending != null) {
+      return Optional.ofNullable(pending.value);
+    }
+
+    if (!keys.contains(id)) {
+      return Optional.empty();
+    }
+
+    try {
+      return store.read(id);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } catch (ClassNotFoundException e) {
+      throw new IllegalStateException("Unbekannter Typ im Speicher: " + e.getMessage(), e);
+    }
+  }
+
+
+  private void insert(Id id, T value, boolean dirty) {
+    Node node = new Node(value, weigher.applyAsInt(value), dirty);
+    node.segment = window;
+    data.put(id, node);
+    window.put(id, node);
+    windowWeight += node.weight;
+    evict();
+  }
+
+
+  private void onHit(Id id, Node node) {
+    if (node.segment == probation) {
+      probation.remove(id);
+      probationWeight -= node.weight;
+      node.segment = protectedSegment;
+      protectedSegment.put(id, node);
+      protectedWeight += node.weight;
+
+      while (protectedWeight > protectedMaximum && protectedSegment.size() > 1) {
+        Id demoted = protectedSegment.keySet().iterator().next();
+        Node demotedNode = protectedSegment.remove(demoted);
+        protectedWeight -= demotedNode.weight;
+        demotedNode.segment = probation;
+        probation.put(demoted, demotedNode);
+        probationWeight += demotedNode.weight;
+      }
+      return;
+    }
+
+    node.segment.remove(id);
+    node.segment.put(id, node);
+  }
+
+
+  private void evict() {
+    while (windowWeight > windowMaximum && window.size() > 1) {
+      Id candidate = window.keySet().iterator().next();
+      Node node = window.remove(candidate);
+      windowWeight -= node.weight;
+      admit(candidate, node);
+    }
+
+    while (totalWeight() > maximumWeight && !data.isEmpty()) {
+      Map<Id, Node> segment = !probation.isEmpty() ? probation : !protectedSegment.isEmpty() ? protectedSegment : window;
+      Id victim = segment.keySet().iterator().next();
+      evict(victim, segment.get(victim));
+    }
+  }
+
+
+  /**
+   * Nimmt einen aus dem Fenster gefallenen Eintrag in den Hauptbereich auf,
+   * wenn er häufiger angefragt wurde als die Einträge, die dafür weichen
+   * müssten.
+   */
+  private void admit(Id candidate, Node node) {
+    int frequency = sketch.frequency(candidate);
+
+    while (totalWeight() + node.weight > maximumWeight) {
+      Map<Id, Node> segment = !probation.isEmpty() ? probation : protectedSegment;
+      if (segment.isEmpty()) {
+        break;
+      }
+
+      Id victim = segment.keySet().iterator().next();
+      if (sketch.frequency(victim) >= frequency) {
+        data.remove(candidate);
+        evicted(candidate, node);
+        return;
+      }
+
+      evict(victim, segment.get(victim));
+    }
+
+    node.segment = probation;
+    probation.put(candidate, node);
+    probationWeight += node.weight;
+  }
+
+
+  private void evict(Id id, Node node) {
+    remove(id, node);
+    evicted(id, node);
+  }
+
+
+  private void evicted(Id id, Node node) {
+    evictions.increment();
+
+    T value = changed.remove(id);
+    if (value != null) {
+      schedule(id, value);
+    } else if (node.dirty) {
+      schedule(id, node.value);
+    }
+  }
+
+
+  private void remove(Id id, Node node) {
+    data.remove(id);
+    node.segment.remove(id);
+
+    if (node.segment == window) {
+      windowWeight -= node.weight;
+    } else if (node.segment == probation) {
+      probationWeight -= node.weight;
+    } else {
+      protectedWeight -= node.weight;
+    }
+  }
+
+
+  private void reweigh(Node node, int weight) {
+    int delta = weight - node.weight;
+    node.weight = weight;
+
+    if (node.segment == window) {
+      windowWeight += delta;
+    } else if (node.segment == probation) {
+      probationWeight += delta;
+    } else {
+      protectedWeight += delta;
+    }
+  }
+
+
+  private long totalWeight() {
+    return windowWeight + probationWeight + protectedWeight;
+  }
+
+
+  /**
+   * Merkt den neuesten Stand eines Eintrags zum Schreiben vor; {@code null}
+   * löscht ihn. Ältere Aufträge für denselben Schlüssel schreiben dann bereits
+   * diesen Stand, spätere finden nichts mehr vor.
+   */
+  private void schedule(Id id, T value) {
+    pendingWrites.put(id, new PendingWrite<>(value));
+    writer.execute(() -> writeBehind(id));
+  }
+
+
+  private void writeBehind(Id id) {
+    PendingWrite<T> pending = pendingWrites.get(id);
+    if (pending == null) {
+      return;
+    }
+
+    try {
+      if (pending.value == null) {
+        store.delete(id);
+      } else {
+        store.write(id, pending.value);
+      }
+
+      writesBehind.increment();
+      pendingWrites.remove(id, pending);
+    } catch (IOException e) {
+      System.err.println("Eintrag " + id + " konnte nicht geschrieben werden: " + e.getMessage());
+    }
+  }
+
+
+  private void awaitWriter() throws IOException {
+    try {
+      writer.submit(() -> { }).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Warten auf das Nachschreiben wurde unterbrochen.", e);
+    } catch (ExecutionException e) {
+      throw new IOException(e.getCause());
+    }
+  }
+
+
+  private final class Node {
+
+    private T value;
+    private int weight;
+    private boolean dirty;
+    private LinkedHashMap<Id, Node> segment;
+
+
+    Node(T value, int weight, boolean dirty) {
+      this.value = value;
+      this.weight = weight;
+      this.dirty = dirty;
+    }
+
+  }
+
+
+  /**
+   * Ein vorgemerkter Schreibauftrag. Gleichheit ist Identität, damit ein
+   * erledigter Auftrag keinen neueren für dieselbe Entität entfernt.
+   */
+  private static final class PendingWrite<T> {
+
+    private final T value;
+
+
+    PendingWrite(T value) {
+      this.value = value;
+    }
+
+  }
+
+}
@@ -2,6 +2,7 @@ package de.raywo.banking.persistence;
 
 import de.raywo.banking.domain.Customer;
 
+import java.util.Map;
 import java.util.UUID;
 
 public class CustomerRepository extends AbstractMapBasedRepository<UUID, Customer> {
@@ -10,4 +11,10 @@ public class CustomerRepository extends AbstractMapBasedRepository<UUID, Custome
     super(storage);
   }
 
+
+  @Override
+  protected Map<UUID, Customer> createEntityMap() {
+    return new UuidKeyedMap<>();
+  }
+
 }
@@ -0,0 +1,83 @@
+package de.raywo.banking.persistence;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+/**
+ * Das Verzeichnis, in dem eine Bank ihre Dateien ablegt.
+ * <p>
+ * Solange es geöffnet ist, hält es eine exklusive Sperre auf
+ * {@value #LOCK_FILE}. Ein zweiter Prozess oder ein zweites Objekt im selben
+ * Prozess kann dasselbe Verzeichnis daher nicht öffnen und die Dateien nicht
+ * gleichzeitig beschreiben.
+ */
+public final class DataDirectory implements AutoCloseable {
+
+  public static final String LOCK_FILE = "bank.lock";
+
+  private final Path path;
+  private final FileChannel channel;
+  private final FileLock lock;
+
+
+  private DataDirectory(Path path, FileChannel channel, FileLock lock) {
+    this.path = path;
+    this.channel = channel;
+    this.lock = lock;
+  }
+
+
+  public static DataDirectory open(Path path) throws IOException {
+    Objects.requireNonNull(path);
+    Files.createDirectories(path.toAbsolutePath());
+
+    FileChannel channel = FileChannel.open(path.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    FileLock lock;
+
+    try {
+      lock = channel.tryLock();
+    } catch (OverlappingFileLockException e) {
+      lock = null;
+    }
+
+    if (lock == null) {
+      channel.close();
+      throw new IOException("Das Datenverzeichnis " + path.toAbsolutePath() + " wird bereits verwendet.");
+    }
+
+    return new DataDirectory(path, channel, lock);
+  }
+
+
+  public Path getPath() {
+    return path;
+  }
+
+
+  public Path resolve(String file) {
+    return path.resolve(file);
+  }
+
+
+  @Override
+  public void close() throws IOException {
+    try {
+      lock.release();
+    } finally {
+      channel.close();
+    }
+  }
+
+
+  @Override
+  public String toString() {
+    return path.toAbsolutePath().toString();
+  }
+
+}
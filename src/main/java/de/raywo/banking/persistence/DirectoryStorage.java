@@ -0,0 +1,103 @@
+package de.raywo.banking.persistence;
+
+import java.io.*;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Legt jede Entität in einer eigenen Datei eines Verzeichnisses ab. Eine
+ * Datei wird zunächst unter einem temporären Namen geschrieben und dann
+ * atomar umbenannt.
+ */
+public class DirectoryStorage<Id, T> implements KeyedStorage<Id, T> {
+
+  private static final String SUFFIX = ".bin";
+
+  private final Path directory;
+  private final Function<String, Id> keyParser;
+
+
+  public DirectoryStorage(Path directory, Function<String, Id> keyParser) {
+    this.directory = Objects.requireNonNull(directory);
+    this.keyParser = Objects.requireNonNull(keyParser);
+  }
+
+
+  @Override
+  public Optional<T> read(Id id) throws IOException, ClassNotFoundException {
+    Path file = fileOf(id);
+
+    if (Files.notExists(file)) {
+      return Optional.empty();
+    }
+
+    try (var in = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      @SuppressWarnings("unchecked")
+      T entity = (T) in.readObject();
+      return Optional.of(entity);
+    }
+  }
+
+
+  @Override
+  public void write(Id id, T entity) throws IOException {
+    Files.createDirectories(directory);
+
+    Path file = fileOf(id);
+    Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+
+    try (var out = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+      out.writeObject(entity);
+    }
+
+    Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+
+  @Override
+  public void delete(Id id) throws IOException {
+    Files.deleteIfExists(fileOf(id));
+  }
+
+
+  @Override
+  public void deleteAll() throws IOException {
+    for (Id id : keys()) {
+      delete(id);
+    }
+  }
+
+
+  @Override
+  public Collection<Id> keys() throws IOException {
+    if (Files.notExists(directory)) {
+      return List.of();
+    }
+
+    List<Id> keys = new ArrayList<>();
+
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        keys.add(keyParser.apply(URLDecoder.decode(name.substring(0, name.length() - SUFFIX.length()),
+            StandardCharsets.UTF_8)));
+      }
+    }
+
+    return keys;
+  }
+
+
+  private Path fileOf(Id id) {
+    return directory.resolve(URLEncoder.encode(id.toString(), StandardCharsets.UTF_8) + SUFFIX);
+  }
+
+}
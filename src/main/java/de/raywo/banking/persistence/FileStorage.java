@@ -82,7 +82,7 @@ public class FileStorage<Id, T> implements Storage<Id, T> {
 
       throw new IOException("Unerwarteter Inhalt in Datei " + file + ": " + obj.getClass().getName());
     } catch (EOFException | StreamCorruptedException e) {
-      return new HashMap<>();
+      throw new IOException("Datei " + file + " ist beschädigt: " + e.getMessage(), e);
     }
   }
 }
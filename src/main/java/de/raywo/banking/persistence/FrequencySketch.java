@@ -0,0 +1,97 @@
+package de.raywo.banking.persistence;
+
+/**
+ * Schätzt, wie oft ein Schlüssel zuletzt angefragt wurde (Count-Min-Sketch
+ * mit vier Zeilen aus 4-Bit-Zählern, je 16 Zähler in einem {@code long}).
+ * Nach zehnmal so vielen Zählungen wie Einträgen im Cache werden alle Zähler
+ * halbiert, damit alte Häufigkeiten verblassen.
+ */
+final class FrequencySketch {
+
+  private static final long[] SEEDS = {
+      0xC3A5C85C97CB3127L, 0xB492B66FBE98F273L, 0x9AE16A3B2F90404FL, 0xCBF29CE484222325L
+  };
+  private static final long RESET_MASK = 0x7777777777777777L;
+  private static final int MAXIMUM = 15;
+
+  private final long[] table;
+  private final int mask;
+  private final int sampleSize;
+  private int additions;
+
+
+  FrequencySketch(long maximumSize) {
+    int size = (int) Math.min(1 << 24, Math.max(64, maximumSize));
+    int capacity = Integer.highestOneBit(size - 1) << 1;
+
+    this.table = new long[capacity];
+    this.mask = capacity - 1;
+    this.sampleSize = 10 * size;
+  }
+
+
+  int frequency(Object key) {
+    int hash = spread(key.hashCode());
+    int frequency = MAXIMUM;
+
+    for (int row = 0; row < SEEDS.length; row++) {
+      long h = indexHash(hash, row);
+      frequency = Math.min(frequency, (int) ((table[slot(h)] >>> shift(h)) & MAXIMUM));
+    }
+
+    return frequency;
+  }
+
+
+  void increment(Object key) {
+    int hash = spread(key.hashCode());
+    boolean added = false;
+
+    for (int row = 0; row < SEEDS.length; row++) {
+      long h = indexHash(hash, row);
+      int slot = slot(h);
+      int shift = shift(h);
+
+      if (((table[slot] >>> shift) & MAXIMUM) < MAXIMUM) {
+        table[slot] += 1L << shift;
+        added = true;
+      }
+    }
+
+    if (added && ++additions >= sampleSize) {
+      reset();
+    }
+  }
+
+
+  private void reset() {
+    for (int i = 0; i < table.length; i++) {
+      table[i] = (table[i] >>> 1) & RESET_MASK;
+    }
+
+    additions /= 2;
+  }
+
+
+  private int slot(long h) {
+    return (int) h & mask;
+  }
+
+
+  private static int shift(long h) {
+    return (int) (h >>> 60) << 2;
+  }
+
+
+  private static long indexHash(int hash, int row) {
+    long h = (hash + SEEDS[row]) * SEEDS[row];
+    return h ^ (h >>> 29);
+  }
+
+
+  private static int spread(int hash) {
+    int h = hash * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+}
@@ -0,0 +1,23 @@
+package de.raywo.banking.persistence;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Optional;
+
+/**
+ * Ein Speicher, der einzelne Entitäten über ihren Schlüssel liest und
+ * schreibt, ohne den gesamten Bestand zu laden.
+ */
+public interface KeyedStorage<Id, T> {
+
+  Optional<T> read(Id id) throws IOException, ClassNotFoundException;
+
+  void write(Id id, T entity) throws IOException;
+
+  void delete(Id id) throws IOException;
+
+  void deleteAll() throws IOException;
+
+  Collection<Id> keys() throws IOException;
+
+}
@@ -0,0 +1,415 @@
+package de.raywo.banking.persistence;
+
+import de.raywo.banking.domain.Identifiable;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.*;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Eine Map von Entitäten, deren Schlüssel sich in ein bis drei {@code long}s
+ * kodieren lassen.
+ * <p>
+ * Die kodierten Schlüssel liegen in einem einzigen {@code long[]}, die
+ * Entitäten in einem parallelen {@code Object[]} (offene Adressierung mit
+ * linearem Sondieren). Es gibt keine Entry-Objekte; der Schlüssel eines
+ * Eintrags ergibt sich beim Iterieren aus {@link Identifiable#getId()}.
+ * <p>
+ * Schreibende Zugriffe verändern die Tabelle an Ort und Stelle und schließen
+ * sich über die Schreibsperre eines {@link StampedLock} gegenseitig aus.
+ * {@link #get} liest optimistisch ohne Sperre und wiederholt die Suche unter
+ * der Lesesperre, wenn währenddessen geschrieben wurde; ein Leser verpasst
+ * also keinen vorhandenen Schlüssel, während ein Löschen Einträge verschiebt.
+ * Die Iteration ist dagegen nur ohne gleichzeitige Änderungen konsistent.
+ */
+public abstract class PrimitiveKeyedMap<Id, T extends Identifiable<Id>>
+    extends AbstractMap<Id, T> implements Serializable {
+
+  private static final int MIN_CAPACITY = 16;
+
+  private final int words;
+  private transient volatile Table table;
+  private transient volatile int size;
+  private transient StampedLock lock = new StampedLock();
+
+
+  protected PrimitiveKeyedMap(int words) {
+    if (words < 1 || words > 3) {
+      throw new IllegalArgumentException("Ein Schlüssel umfasst ein bis drei longs: " + words);
+    }
+
+    this.words = words;
+    this.table = new Table(MIN_CAPACITY, words);
+  }
+
+
+  /**
+   * Kodiert einen Schlüssel, oder liefert {@code null}, wenn das Objekt kein
+   * gültiger Schlüssel dieser Map ist.
+   */
+  protected abstract PackedKey pack(Object key);
+
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+
+  @Override
+  public T get(Object key) {
+    PackedKey packed = pack(key);
+    return packed == null ? null : get(packed.first(), packed.second(), packed.third());
+  }
+
+
+  @SuppressWarnings("unchecked")
+  protected T get(long first, long second, long third) {
+    long stamp = lock.tryOptimisticRead();
+    if (stamp != 0L) {
+      Table current = table;
+      int slot = indexOf(current, first, second, third);
+      Object value = slot < 0 ? null : current.values[slot];
+
+      if (lock.validate(stamp)) {
+        return (T) value;
+      }
+    }
+
+    stamp = lock.readLock();
+    try {
+      Table current = table;
+      int slot = indexOf(current, first, second, third);
+      return slot < 0 ? null : (T) current.values[slot];
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+
+  @Override
+  public boolean containsKey(Object key) {
+    return get(key) != null;
+  }
+
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public T put(Id key, T value) {
+    Objects.requireNonNull(value);
+
+    if (!value.getId().equals(key)) {
+      throw new IllegalArgumentException("Der Schlüssel " + key + " passt nicht zur Entität " + value.getId());
+    }
+
+    PackedKey packed = pack(key);
+    if (packed == null) {
+      throw new IllegalArgumentException("Ungültiger Schlüssel: " + key);
+    }
+
+    long stamp = lock.writeLock();
+    try {
+      Table current = table;
+      int slot = slotFor(current, packed.first(), packed.second(), packed.third());
+      T previous = (T) current.values[slot];
+
+      if (previous == null) {
+        storeKey(current, slot, packed.first(), packed.second(), packed.third());
+      }
+
+      current.values[slot] = value;
+
+      if (previous == null && ++size * 4 > current.values.length * 3) {
+        resize(current.values.length * 2);
+      }
+
+      return previous;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public T remove(Object key) {
+    PackedKey packed = pack(key);
+    if (packed == null) {
+      return null;
+    }
+
+    long stamp = lock.writeLock();
+    try {
+      Table current = table;
+      int slot = indexOf(current, packed.first(), packed.second(), packed.third());
+      if (slot < 0) {
+        return null;
+      }
+
+      T removed = (T) current.values[slot];
+      deleteSlot(current, slot);
+      size--;
+
+      return removed;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+
+  @Override
+  public void clear() {
+    long stamp = lock.writeLock();
+    try {
+      table = new Table(MIN_CAPACITY, words);
+      size = 0;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+
+  @Override
+  public Collection<T> values() {
+    return new AbstractCollection<>() {
+      @Override
+      public Iterator<T> iterator() {
+        return new ValueIterator();
+      }
+
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
+
+  @Override
+  public Set<Entry<Id, T>> entrySet() {
+    return new AbstractSet<>() {
+      @Override
+      public Iterator<Entry<Id, T>> iterator() {
+        ValueIterator values = new ValueIterator();
+
+        return new Iterator<>() {
+          @Override
+          public boolean hasNext() {
+            return values.hasNext();
+          }
+
+
+          @Override
+          public Entry<Id, T> next() {
+            T value = values.next();
+            return new SimpleImmutableEntry<>(value.getId(), value);
+          }
+        };
+      }
+
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
+
+  private int indexOf(Table current, long first, long second, long third) {
+    int mask = current.mask();
+    int slot = hash(first, second, third) & mask;
+
+    while (current.values[slot] != null) {
+      if (keyAt(current, slot, first, second, third)) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+
+    return -1;
+  }
+
+
+  private int slotFor(Table current, long first, long second, long third) {
+    int mask = current.mask();
+    int slot = hash(first, second, third) & mask;
+
+    while (current.values[slot] != null && !keyAt(current, slot, first, second, third)) {
+      slot = (slot + 1) & mask;
+    }
+
+    return slot;
+  }
+
+
+  private boolean keyAt(Table current, int slot, long first, long second, long third) {
+    long[] keys = current.keys;
+    int offset = slot * words;
+
+    return keys[offset] == first
+        && (words < 2 || keys[offset + 1] == second)
+        && (words < 3 || keys[offset + 2] == third);
+  }
+
+
+  private void storeKey(Table current, int slot, long first, long second, long third) {
+    long[] keys = current.keys;
+    int offset = slot * words;
+
+    keys[offset] = first;
+    if (words > 1) {
+      keys[offset + 1] = second;
+    }
+    if (words > 2) {
+      keys[offset + 2] = third;
+    }
+  }
+
+
+  private int hashAt(long[] keys, int offset) {
+    return hash(
+        keys[offset],
+        words > 1 ? keys[offset + 1] : 0L,
+        words > 2 ? keys[offset + 2] : 0L
+    );
+  }
+
+
+  private void deleteSlot(Table current, int slot) {
+    long[] keys = current.keys;
+    Object[] values = current.values;
+    int mask = current.mask();
+    int gap = slot;
+    int next = (gap + 1) & mask;
+
+    while (values[next] != null) {
+      int home = hashAt(keys, next * words) & mask;
+
+      if (((next - home) & mask) >= ((next - gap) & mask)) {
+        System.arraycopy(keys, next * words, keys, gap * words, words);
+        values[gap] = values[next];
+        gap = next;
+      }
+
+      next = (next + 1) & mask;
+    }
+
+    values[gap] = null;
+  }
+
+
+  private void resize(int capacity) {
+    Table old = table;
+    Table resized = new Table(capacity, words);
+    int mask = resized.mask();
+
+    for (int i = 0; i < old.values.length; i++) {
+      if (old.values[i] != null) {
+        int slot = hashAt(old.keys, i * words) & mask;
+        while (resized.values[slot] != null) {
+          slot = (slot + 1) & mask;
+        }
+
+        System.arraycopy(old.keys, i * words, resized.keys, slot * words, words);
+        resized.values[slot] = old.values[i];
+      }
+    }
+
+    table = resized;
+  }
+
+
+  private static int hash(long first, long second, long third) {
+    long h = first * 0x9E3779B97F4A7C15L;
+    h = (h ^ second) * 0xC2B2AE3D27D4EB4FL;
+    h = (h ^ third) * 0x165667B19E3779F9L;
+
+    return (int) (h ^ (h >>> 32));
+  }
+
+
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    out.defaultWriteObject();
+    out.writeInt(size);
+
+    for (T value : values()) {
+      out.writeObject(value);
+    }
+  }
+
+
+  @SuppressWarnings("unchecked")
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    lock = new StampedLock();
+
+    int count = in.readInt();
+    table = new Table(Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, count * 4 / 3)) * 2), words);
+
+    for (int i = 0; i < count; i++) {
+      T value = (T) in.readObject();
+      put(value.getId(), value);
+    }
+  }
+
+
+  protected record PackedKey(long first, long second, long third) {
+  }
+
+
+  private record Table(long[] keys, Object[] values) {
+
+    Table(int capacity, int words) {
+      this(new long[capacity * words], new Object[capacity]);
+    }
+
+
+    int mask() {
+      return values.length - 1;
+    }
+
+  }
+
+
+  private class ValueIterator implements Iterator<T> {
+
+    private final Object[] values = table.values();
+    private int next = advance(0);
+
+
+    @Override
+    public boolean hasNext() {
+      return next < values.length;
+    }
+
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+
+      T value = (T) values[next];
+      next = advance(next + 1);
+
+      return value;
+    }
+
+
+    private int advance(int from) {
+      while (from < values.length && values[from] == null) {
+        from++;
+      }
+
+      return from;
+    }
+
+  }
+
+}
@@ -24,4 +24,12 @@ public interface Repository<Id, T extends Identifiable<Id>> {
 
   void initialize() throws IOException, ClassNotFoundException;
 
+
+  /**
+   * Meldet eine an Ort und Stelle veränderte Entität. Repositories, die ihren
+   * Bestand vollständig im Speicher halten, brauchen das nicht.
+   */
+  default void markDirty(T entity) {
+  }
+
 }
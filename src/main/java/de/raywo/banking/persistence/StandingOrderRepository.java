@@ -0,0 +1,20 @@
+package de.raywo.banking.persistence;
+
+import de.raywo.banking.domain.StandingOrder;
+
+import java.util.Map;
+import java.util.UUID;
+
+public class StandingOrderRepository extends AbstractMapBasedRepository<UUID, StandingOrder> {
+
+  public StandingOrderRepository(Storage<UUID, StandingOrder> storage) {
+    super(storage);
+  }
+
+
+  @Override
+  protected Map<UUID, StandingOrder> createEntityMap() {
+    return new UuidKeyedMap<>();
+  }
+
+}
@@ -0,0 +1,23 @@
+package de.raywo.banking.persistence;
+
+import de.raywo.banking.domain.Identifiable;
+
+import java.util.UUID;
+
+public class UuidKeyedMap<T extends Identifiable<UUID>> extends PrimitiveKeyedMap<UUID, T> {
+
+  public UuidKeyedMap() {
+    super(2);
+  }
+
+
+  @Override
+  protected PackedKey pack(Object key) {
+    if (!(key instanceof UUID uuid)) {
+      return null;
+    }
+
+    return new PackedKey(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), 0L);
+  }
+
+}
@@ -0,0 +1,130 @@
+package de.raywo.banking.system;
+
+import de.raywo.banking.domain.Account;
+import de.raywo.banking.domain.AuthorizationHold;
+import de.raywo.banking.system.timer.HierarchicalTimerWheel;
+import de.raywo.banking.system.timer.HierarchicalTimerWheel.Timeout;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Gibt abgelaufene {@link AuthorizationHold}s automatisch frei. Jede
+ * Vormerkung liegt mit ihrem Ablaufzeitpunkt in einem
+ * {@link HierarchicalTimerWheel}; freigegebene oder gebuchte Vormerkungen
+ * werden dort in konstanter Zeit wieder entfernt.
+ */
+public class HoldExpiryService implements AutoCloseable {
+
+  public static final Duration DEFAULT_TICK = Duration.ofSeconds(1);
+  private static final int LEVELS = 4;
+
+  private final Function<String, Account> accounts;
+  private final Clock clock;
+  private final Duration tick;
+  private final HierarchicalTimerWheel<AuthorizationHold> wheel;
+  private final Map<UUID, Timeout<AuthorizationHold>> timeouts = new HashMap<>();
+  private ScheduledExecutorService executor;
+
+
+  public HoldExpiryService(Function<String, Account> accounts, Duration tick, Clock clock) {
+    this.accounts = Objects.requireNonNull(accounts);
+    this.clock = Objects.requireNonNull(clock);
+    this.tick = Objects.requireNonNull(tick);
+    this.wheel = new HierarchicalTimerWheel<>(tick.toMillis(), LEVELS, clock.millis());
+  }
+
+
+  /**
+   * Überwacht eine Vormerkung; eine bereits überwachte wird neu eingeplant.
+   */
+  public synchronized void track(AuthorizationHold hold) {
+    Timeout<AuthorizationHold> previous = timeouts.put(hold.id(), wheel.schedule(hold, hold.expiresAt().toEpochMilli()));
+    if (previous != null) {
+      previous.cancel();
+    }
+  }
+
+
+  public synchronized void untrack(UUID holdId) {
+    Timeout<AuthorizationHold> timeout = timeouts.remove(holdId);
+    if (timeout != null) {
+      timeout.cancel();
+    }
+  }
+
+
+  public synchronized int getTrackedCount() {
+    return wheel.size();
+  }
+
+
+  public int expireDue() {
+    return expireDue(clock.instant());
+  }
+
+
+  public int expireDue(Instant now) {
+    List<AuthorizationHold> expired = new ArrayList<>();
+
+    synchronized (this) {
+      wheel.advanceTo(now.toEpochMilli(), expired::add);
+      expired.forEach(hold -> timeouts.remove(hold.id()));
+    }
+
+    int released = 0;
+    for (AuthorizationHold hold : expired) {
+      Account account = accounts.apply(hold.iban());
+      if (account != null && account.releaseHold(hold.id()).isPresent()) {
+        released++;
+      }
+    }
+
+    return released;
+  }
+
+
+  public synchronized void start() {
+    if (executor != null) {
+      return;
+    }
+
+    executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "hold-expiry");
+      thread.setDaemon(true);
+      return thread;
+    });
+
+    executor.scheduleAtFixedRate(this::expireDueSafely, tick.toMillis(), tick.toMillis(), TimeUnit.MILLISECONDS);
+  }
+
+
+  @Override
+  public synchronized void close() {
+    if (executor != null) {
+      executor.shutdown();
+      executor = null;
+    }
+  }
+
+
+  private void expireDueSafely() {
+    try {
+      expireDue();
+    } catch (RuntimeException e) {
+      System.err.println("Freigabe abgelaufener Vormerkungen fehlgeschlagen: " + e.getMessage());
+    }
+  }
+
+}
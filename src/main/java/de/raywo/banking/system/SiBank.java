@@ -1,48 +1,208 @@
 package de.raywo.banking.system;
 
-import de.raywo.banking.domain.Account;
-import de.raywo.banking.domain.Customer;
+import de.raywo.banking.domain.*;
 import de.raywo.banking.persistence.AccountRepository;
+import de.raywo.banking.persistence.AsyncPersister;
 import de.raywo.banking.persistence.CustomerRepository;
+import de.raywo.banking.persistence.DataDirectory;
 import de.raywo.banking.persistence.FileStorage;
 import de.raywo.banking.persistence.Repository;
+import de.raywo.banking.persistence.StandingOrderRepository;
+import de.raywo.banking.system.engine.PostingEngine;
+import de.raywo.banking.system.events.TransactionEventStream;
+import de.raywo.banking.system.events.TransactionJournal;
+import de.raywo.banking.system.integrity.IntegrityReport;
+import de.raywo.banking.system.integrity.IntegrityVerifier;
+import de.raywo.banking.system.integrity.MerkleTree;
+import de.raywo.banking.system.replication.ReplicationPrimary;
+import de.raywo.banking.system.replication.ReplicationStandby;
+import de.raywo.banking.system.search.SearchPage;
+import de.raywo.banking.system.search.TransactionIndex;
+import de.raywo.banking.system.search.TransactionQuery;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.Clock;
+import java.time.Duration;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedSet;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 public class SiBank {
 
+  /**
+   * Ohne ausdrückliche Angabe legt die Bank ihre Dateien im Arbeitsverzeichnis
+   * ab.
+   */
+  public static final Path DEFAULT_DATA_DIRECTORY = Path.of("");
+
+  private static final String ACCOUNTS_FILE = "accounts.bin";
+  private static final String CUSTOMERS_FILE = "customers.bin";
+  private static final String STANDING_ORDERS_FILE = "standing-orders.bin";
+  private static final String JOURNAL_FILE = "transactions.journal";
+
   private String name;
   private String city;
   private final String bic;
+  private final DataDirectory dataDirectory;
   private final Repository<String, Account> accountRepository;
   private final Repository<UUID, Customer> customerRepository;
+  private final Repository<UUID, StandingOrder> standingOrderRepository;
+  private final PostingRules postingRules;
+  private final PurposeDictionary purposeDictionary = new PurposeDictionary();
+  private final TransactionEventStream transactionEvents;
+  private final StandingOrderScheduler standingOrders;
+  private final HoldExpiryService holdExpiry;
+  private final AsyncPersister persister;
+  private final MerkleTree merkleTree;
+  private final TransactionIndex transactionIndex;
+  private volatile PostingEngine postingEngine;
+  private final Object adoptionLock = new Object();
+  private volatile ReplicationPrimary replication;
+  private final TransactionListener postingListener = new TransactionListener() {
+    @Override
+    public void transactionPosted(Account account, Transaction transaction, int position) {
+      SiBank.this.transactionPosted(account, transaction, position);
+    }
+
+
+    @Override
+    public void postingsCompleted(Account account) {
+      transactionEvents.postingsCompleted(account);
+    }
+
+
+    @Override
+    public void holdPlaced(Account account, AuthorizationHold hold) {
+      holdExpiry.track(hold);
+    }
+
+
+    @Override
+    public void holdRemoved(Account account, AuthorizationHold hold) {
+      holdExpiry.untrack(hold.id());
+    }
+
+
+    @Override
+    public void stateChanged(Account account) {
+      ReplicationPrimary primary = replication;
+      if (primary != null) {
+        primary.accountChanged(account);
+      }
+    }
+  };
 
   private static SiBank instance;
 
   public static SiBank getInstance(String name, String city, String bic) {
+    return getInstance(name, city, bic, DEFAULT_DATA_DIRECTORY);
+  }
+
+
+  /**
+   * Liefert die Bank dieses Prozesses und legt sie beim ersten Aufruf mit
+   * ihren Dateien in {@code dataDirectory} an. Das Verzeichnis bleibt für
+   * andere Prozesse gesperrt, solange die Bank läuft.
+   */
+  public static synchronized SiBank getInstance(String name, String city, String bic, Path dataDirectory) {
     if (instance == null) {
-      instance = new SiBank(name, city, bic);
+      instance = new SiBank(name, city, bic, openDataDirectory(dataDirectory));
+    }
+    return instance;
+  }
+
+
+  /**
+   * Macht einen Standby zur Bank dieses Prozesses. Seine Repositories werden
+   * unverändert übernommen und nicht erneut eingelesen; gespeichert wird im
+   * Datenverzeichnis des Standbys, nie in dem des Primärsystems.
+   */
+  public static synchronized SiBank promote(String name, String city, String bic, ReplicationStandby standby) {
+    if (instance != null) {
+      throw new IllegalStateException("In diesem Prozess läuft bereits eine Bank.");
     }
+
+    standby.promote();
+    instance = new SiBank(name, city, bic, standby.getDataDirectory(), standby.getAccounts(), standby.getCustomers(),
+        standby.getStandingOrders(), false);
     return instance;
   }
 
 
-  private SiBank(String name, String city, String bic) {
+  private SiBank(String name, String city, String bic, DataDirectory dataDirectory) {
+    this(
+        name,
+        city,
+        bic,
+        dataDirectory,
+        createAccountRepository(dataDirectory.getPath()),
+        createCustomerRepository(dataDirectory.getPath()),
+        createStandingOrderRepository(dataDirectory.getPath()),
+        true
+    );
+  }
+
+
+  private SiBank(String name, String city, String bic, DataDirectory dataDirectory,
+                 Repository<String, Account> accounts, Repository<UUID, Customer> customers,
+                 Repository<UUID, StandingOrder> standingOrders, boolean initialize) {
     this.name = name;
     this.city = city;
     this.bic = bic;
-    this.accountRepository = new AccountRepository(new FileStorage<>("accounts.bin"));
-    this.customerRepository = new CustomerRepository(new FileStorage<>("customers.bin"));
+    this.dataDirectory = dataDirectory;
+    this.accountRepository = accounts;
+    this.customerRepository = customers;
+    this.standingOrderRepository = standingOrders;
+    this.postingRules = new PostingRules();
+    this.transactionEvents = createTransactionEventStream(dataDirectory.resolve(JOURNAL_FILE));
+
+    if (initialize) {
+      load(accountRepository);
+      load(customerRepository);
+    }
 
-    try {
-      this.accountRepository.initialize();
-      this.customerRepository.initialize();
-    } catch (IOException | ClassNotFoundException e) {
-      // Do nothing because no file existed
-      System.out.println("Keine Datendateien gefunden.");
+    this.holdExpiry = new HoldExpiryService(
+        iban -> findAccount(iban).orElse(null),
+        HoldExpiryService.DEFAULT_TICK,
+        Clock.systemDefaultZone()
+    );
+    this.accountRepository.findAll().forEach(this::attach);
+    this.merkleTree = MerkleTree.of(accountRepository.findAll());
+    this.transactionIndex = new TransactionIndex(iban -> findAccount(iban).orElse(null));
+    this.transactionEvents.subscribe("search-index", transactionIndex);
+    this.transactionIndex.indexAll(accountRepository.findAll());
+
+    if (initialize) {
+      load(standingOrderRepository);
     }
+
+    this.holdExpiry.start();
+
+    this.standingOrders = new StandingOrderScheduler(
+        this,
+        standingOrderRepository,
+        StandingOrderScheduler.DEFAULT_TICK,
+        Clock.systemDefaultZone()
+    );
+
+    this.persister = new AsyncPersister(
+        List.of(
+            transactionEvents::flush,
+            accountRepository::persist,
+            customerRepository::persist,
+            standingOrders::persist
+        ),
+        AsyncPersister.DEFAULT_THRESHOLD
+    );
   }
 
 
@@ -71,6 +231,21 @@ public class SiBank {
   }
 
 
+  public Path getDataDirectory() {
+    return dataDirectory.getPath();
+  }
+
+
+  public PostingRules getPostingRules() {
+    return postingRules;
+  }
+
+
+  public TransactionEventStream getTransactionEvents() {
+    return transactionEvents;
+  }
+
+
   public Collection<Account> getAccounts() {
     return accountRepository.findAll();
   }
@@ -82,25 +257,428 @@ public class SiBank {
 
 
   public void addAccount(Account account) {
-    accountRepository.save(account);
+    persister.awaitCapacity();
+    attach(account);
+
+    synchronized (adoptionLock) {
+      publish(account);
+    }
+
+    merkleTree.update(account);
+    persister.recordChanges(1);
   }
 
 
   public Account getAccount(String iban) throws NotFoundException {
-    return accountRepository
-        .findById(iban)
+    return findAccount(iban)
         .orElseThrow(() -> new NotFoundException("Ein Konto mit der IBAN " + iban + " existiert nicht"));
   }
 
 
+  public void makeTransaction(Transaction transaction)
+      throws NotFoundException, InsufficientFundsException, AccountMismatchException, TransactionRejectedException {
+    persister.awaitCapacity();
+    PostingEngine engine = postingEngine;
+
+    if (engine == null) {
+      getAccount(transaction.getIban()).makeTransaction(transaction);
+      return;
+    }
+
+    try {
+      engine.submit(transaction).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Buchung wurde unterbrochen.", e);
+    } catch (ExecutionException e) {
+      rethrowPostingFailure(e.getCause());
+    }
+  }
+
+
+  public CompletableFuture<Transaction> submitTransaction(Transaction transaction) {
+    try {
+      persister.awaitCapacity();
+    } catch (UncheckedIOException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+
+    PostingEngine engine = postingEngine;
+
+    if (engine != null) {
+      return engine.submit(transaction);
+    }
+
+    try {
+      getAccount(transaction.getIban()).makeTransaction(transaction);
+      return CompletableFuture.completedFuture(transaction);
+    } catch (Exception e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
+
+  public synchronized void startPostingEngine() {
+    if (postingEngine != null) {
+      return;
+    }
+
+    postingEngine = new PostingEngine(
+        iban -> findAccount(iban).orElse(null),
+        transactionEvents,
+        PostingEngine.DEFAULT_CAPACITY
+    );
+  }
+
+
+  public synchronized void stopPostingEngine() {
+    if (postingEngine == null) {
+      return;
+    }
+
+    PostingEngine engine = postingEngine;
+    postingEngine = null;
+    engine.close();
+  }
+
+
+  public boolean isPostingEngineRunning() {
+    return postingEngine != null;
+  }
+
+
+  public AuthorizationHold placeHold(String iban, Money amount, String purpose, Duration validity)
+      throws NotFoundException, InsufficientFundsException {
+    return getAccount(iban).placeHold(amount, purpose, Instant.now().plus(validity));
+  }
+
+
+  public void releaseHold(String iban, UUID holdId) throws NotFoundException, HoldNotFoundException {
+    getAccount(iban)
+        .releaseHold(holdId)
+        .orElseThrow(() -> new HoldNotFoundException("Eine Vormerkung mit der ID " + holdId + " existiert nicht."));
+  }
+
+
+  public Withdrawal captureHold(String iban, UUID holdId, Money amount)
+      throws NotFoundException, HoldNotFoundException, InsufficientFundsException, TransactionRejectedException {
+    return getAccount(iban).captureHold(holdId, amount);
+  }
+
+
+  public Collection<StandingOrder> getStandingOrders() {
+    return standingOrderRepository.findAll();
+  }
+
+
+  public void addStandingOrder(StandingOrder order) {
+    persister.awaitCapacity();
+    standingOrders.add(order);
+    persister.recordChanges(1);
+  }
+
+
+  public void cancelStandingOrder(UUID id) throws NotFoundException {
+    standingOrders.cancel(id);
+  }
+
+
+  public StandingOrderScheduler getStandingOrderScheduler() {
+    return standingOrders;
+  }
+
+
+  public void startStandingOrders() {
+    standingOrders.start();
+  }
+
+
   public void addCustomer(Customer customer) {
-    customerRepository.save(customer);
+    persister.awaitCapacity();
+
+    synchronized (adoptionLock) {
+      customerRepository.save(customer);
+    }
+
+    persister.recordChanges(1);
+
+    ReplicationPrimary primary = replication;
+    if (primary != null) {
+      primary.customerAdded(customer);
+    }
+  }
+
+
+  /**
+   * Übernimmt fertig aufgebaute Kunden und Konten samt Verlauf, etwa aus
+   * einem Massenimport, und speichert den Bestand mit einem einzigen
+   * Schreibvorgang je Datei: alle Konten landen zusammen in
+   * {@code accounts.bin}, alle Kunden in {@code customers.bin}. Die Verläufe
+   * gehen ohne Ereignisse direkt in Suchindex und Merkle-Baum ein.
+   * <p>
+   * Die Prüfung auf bereits vorhandene Kunden und Konten und die Übernahme
+   * geschehen unter derselben Sperre wie in {@link #addAccount} und
+   * {@link #addCustomer}, so dass keiner der beiden dazwischen einen Eintrag
+   * gleicher ID anlegen kann.
+   */
+  public void importPortfolio(Collection<Customer> customers, Collection<Account> accounts) throws IOException {
+    List<byte[]> leaves = accounts.parallelStream().map(MerkleTree::leafOf).toList();
+
+    synchronized (adoptionLock) {
+      for (Customer customer : customers) {
+        if (customerRepository.findById(customer.getId()).isPresent()) {
+          throw new IllegalArgumentException("Der Kunde " + customer.getId() + " existiert bereits.");
+        }
+      }
+
+      for (Account account : accounts) {
+        if (accountRepository.findById(account.getIban()).isPresent()) {
+          throw new IllegalArgumentException("Ein Konto mit der IBAN " + account.getIban() + " existiert bereits.");
+        }
+      }
+
+      customers.forEach(customerRepository::save);
+
+      ReplicationPrimary primary = replication;
+      if (primary != null) {
+        customers.forEach(primary::customerAdded);
+      }
+
+      int index = 0;
+      for (Account account : accounts) {
+        attach(account);
+        publish(account);
+        merkleTree.put(account.getIban(), leaves.get(index++));
+      }
+    }
+
+    transactionIndex.indexAll(accounts);
+
+    persist();
+  }
+
+
+  /**
+   * Nimmt auf dem lokalen Port {@code port} Standby-Verbindungen an; mit
+   * {@code 0} wählt das System einen freien Port. Angemeldet wird nur ein
+   * Standby, der {@code secret} kennt.
+   */
+  public synchronized ReplicationPrimary startReplication(int port, byte[] secret) throws IOException {
+    // Unter der Sperre der Übernahme sieht jedes neue Konto entweder den
+    // Primärknoten oder liegt bereits im Bestand, den ein Standby erhält.
+    synchronized (adoptionLock) {
+      if (replication == null) {
+        replication = new ReplicationPrimary(port, secret, accountRepository, customerRepository,
+            standingOrderRepository, transactionEvents);
+      }
+    }
+
+    return replication;
+  }
+
+
+  public synchronized void stopReplication() {
+    if (replication != null) {
+      replication.close();
+      replication = null;
+    }
+  }
+
+
+  public ReplicationPrimary getReplication() {
+    return replication;
   }
 
 
   public void persist() throws IOException {
-    accountRepository.persist();
-    customerRepository.persist();
+    try {
+      persistAsync().get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Speichern wurde unterbrochen.", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause() instanceof UncheckedIOException unchecked ? unchecked.getCause() : e.getCause();
+      if (cause instanceof IOException io) throw io;
+
+      throw new IOException("Speichern fehlgeschlagen: " + cause.getMessage(), cause);
+    }
+  }
+
+
+  public CompletableFuture<Void> persistAsync() {
+    return persister.persistAsync();
+  }
+
+
+  public long getPendingChanges() {
+    return persister.getPendingChanges();
+  }
+
+
+  public IntegrityReport verifyIntegrity() {
+    return new IntegrityVerifier().verify(accountRepository.findAll());
+  }
+
+
+  /**
+   * Durchsucht die Umsätze aller Konten. Der Index folgt dem Ereignisstrom,
+   * eine eben gebuchte Transaktion kann daher kurz fehlen.
+   */
+  public SearchPage searchTransactions(TransactionQuery query, int offset, int limit) {
+    return transactionIndex.search(query, offset, limit);
+  }
+
+
+  public TransactionIndex getTransactionIndex() {
+    return transactionIndex;
+  }
+
+
+  public MerkleTree getMerkleTree() {
+    return merkleTree;
+  }
+
+
+  /**
+   * Schreibt den aktuellen Kontenbestand in eine eigene Datei, gegen die
+   * {@link #diffSnapshot} später vergleichen kann. Jedes Konto wird unter
+   * seiner eigenen Sperre geschrieben; einen bankweit einheitlichen Stand
+   * gibt es nur, solange nicht gebucht wird.
+   */
+  public void exportSnapshot(String path) throws IOException {
+    Map<String, Account> snapshot = new HashMap<>();
+    accountRepository.findAll().forEach(account -> snapshot.put(account.getIban(), account));
+
+    new FileStorage<String, Account>(path).saveAll(snapshot);
+  }
+
+
+  /**
+   * Vergleicht den aktuellen Bestand mit einer Momentaufnahme aus
+   * {@link #exportSnapshot} oder einem von {@link #persist()} geschriebenen
+   * {@code accounts.bin} und liefert die IBANs der abweichenden Konten.
+   */
+  public SortedSet<String> diffSnapshot(String path) throws IOException, ClassNotFoundException {
+    Collection<Account> snapshot = new FileStorage<String, Account>(path).readAll().values();
+    return merkleTree.diff(MerkleTree.of(snapshot, merkleTree.getBucketCount()));
+  }
+
+
+  /**
+   * Das Repository, aus dem eine Bank mit dem Datenverzeichnis
+   * {@code directory} beim Start ihre Konten liest und in das sie sie
+   * speichert.
+   */
+  public static Repository<String, Account> createAccountRepository(Path directory) {
+    return new AccountRepository(new FileStorage<>(directory.resolve(ACCOUNTS_FILE).toString()));
+  }
+
+
+  public static Repository<UUID, Customer> createCustomerRepository(Path directory) {
+    return new CustomerRepository(new FileStorage<>(directory.resolve(CUSTOMERS_FILE).toString()));
+  }
+
+
+  public static Repository<UUID, StandingOrder> createStandingOrderRepository(Path directory) {
+    return new StandingOrderRepository(new FileStorage<>(directory.resolve(STANDING_ORDERS_FILE).toString()));
+  }
+
+
+  /**
+   * Sucht ein Konto. Alle Konten liegen dauerhaft im Speicher, so dass jede
+   * IBAN genau eine Instanz hat, unter deren Monitor gebucht wird.
+   */
+  private Optional<Account> findAccount(String iban) {
+    return accountRepository.findById(iban);
+  }
+
+
+  /**
+   * Gibt einen neuen, ausgeführten oder gelöschten Dauerauftrag an laufende
+   * Standbys weiter.
+   */
+  void standingOrderChanged(StandingOrder order) {
+    ReplicationPrimary primary = replication;
+    if (primary != null) {
+      primary.standingOrderChanged(order);
+    }
+  }
+
+
+  /**
+   * Macht ein Konto über das Repository buchbar. Laufende Standbys erhalten
+   * es vorher, damit keine Buchung auf dem Konto vor dem Konto selbst bei
+   * ihnen eintrifft.
+   */
+  private void publish(Account account) {
+    ReplicationPrimary primary = replication;
+
+    if (primary == null) {
+      accountRepository.save(account);
+    } else {
+      primary.accountAdded(account, () -> accountRepository.save(account));
+    }
+  }
+
+
+  /**
+   * Liest den gespeicherten Bestand eines Repositorys. Fehlt die Datei, bleibt
+   * es leer; ist sie vorhanden, aber nicht lesbar, bricht der Start ab, damit
+   * das nächste Speichern sie nicht mit einem leeren Bestand überschreibt.
+   */
+  private static void load(Repository<?, ?> repository) {
+    try {
+      repository.initialize();
+    } catch (IOException | ClassNotFoundException e) {
+      throw new IllegalStateException("Gespeicherte Daten konnten nicht gelesen werden: " + e.getMessage(), e);
+    }
+  }
+
+
+  private void attach(Account account) {
+    account.setPostingRules(postingRules);
+    account.setPurposeDictionary(purposeDictionary);
+    account.setTransactionListener(postingListener);
+    account.getHolds().forEach(holdExpiry::track);
+  }
+
+
+  private void transactionPosted(Account account, Transaction transaction, int position) {
+    transactionEvents.transactionPosted(account, transaction, position);
+    merkleTree.update(account);
+    persister.recordChanges(1);
+  }
+
+
+  private static void rethrowPostingFailure(Throwable cause)
+      throws NotFoundException, InsufficientFundsException, AccountMismatchException, TransactionRejectedException {
+    if (cause instanceof NotFoundException e) throw e;
+    if (cause instanceof InsufficientFundsException e) throw e;
+    if (cause instanceof AccountMismatchException e) throw e;
+    if (cause instanceof TransactionRejectedException e) throw e;
+    if (cause instanceof RuntimeException e) throw e;
+
+    throw new IllegalStateException("Buchung fehlgeschlagen: " + cause.getMessage(), cause);
+  }
+
+
+  private static DataDirectory openDataDirectory(Path path) {
+    try {
+      return DataDirectory.open(path);
+    } catch (IOException e) {
+      throw new IllegalStateException(e.getMessage(), e);
+    }
+  }
+
+
+  private static TransactionEventStream createTransactionEventStream(Path file) {
+    try {
+      TransactionJournal journal = TransactionJournal.open(file);
+      return new TransactionEventStream(TransactionEventStream.DEFAULT_CAPACITY, journal);
+    } catch (IOException e) {
+      System.err.println("Transaktionsjournal konnte nicht geöffnet werden: " + e.getMessage());
+      return new TransactionEventStream(TransactionEventStream.DEFAULT_CAPACITY);
+    }
   }
 
 
@@ -0,0 +1,427 @@
+package de.raywo.banking.system;
+
+import de.raywo.banking.domain.Account;
+import de.raywo.banking.domain.StandingOrder;
+import de.raywo.banking.domain.Transaction;
+import de.raywo.banking.persistence.Repository;
+import de.raywo.banking.system.timer.HierarchicalTimerWheel;
+import de.raywo.banking.system.timer.HierarchicalTimerWheel.Timeout;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Führt fällige {@link StandingOrder}s aus.
+ * <p>
+ * Jeder aktive Auftrag liegt mit seinem nächsten Ausführungstermin in einem
+ * {@link HierarchicalTimerWheel}. Ein Tick löst nur die tatsächlich fälligen
+ * Aufträge aus, ohne alle Aufträge zu durchsuchen. Die fälligen Aufträge
+ * werden gemeinsam über {@link SiBank#submitTransaction(Transaction)} gebucht.
+ * Nach einer Ausfallzeit holt ein Auftrag alle verpassten Termine nach.
+ * <p>
+ * Eine Ausführung besteht aus einer Abbuchung beim Auftraggeber und einer
+ * getrennten Gutschrift beim Empfänger. Scheitert die Gutschrift, wird die
+ * Abbuchung durch eine Rückbuchung ({@link StandingOrder#refundFor(Instant)})
+ * ausgeglichen. Gezählt wird eine Ausführung erst, wenn ihre Abbuchung
+ * gebucht ist; scheitert sie, bleibt der Termin fällig und wird beim nächsten
+ * Tick erneut versucht. Fehlschläge liefert {@link #getFailures()}.
+ * <p>
+ * Alle Buchungen einer Ausführung tragen ihren Termin als Zeitstempel. Der
+ * Konstruktor gleicht den gespeicherten Zähler daran mit der Historie der
+ * Konten ab, denn Aufträge und Konten werden getrennt gespeichert: Termine
+ * mit gespeicherten Buchungen gelten als ausgeführt, Termine ohne als offen,
+ * und fehlende Gegenbuchungen werden beim ersten Tick nachgeholt.
+ */
+public class StandingOrderScheduler implements AutoCloseable {
+
+  public static final Duration DEFAULT_TICK = Duration.ofMinutes(1);
+  public static final int MAX_FAILURES = 100;
+  private static final int LEVELS = 5;
+
+  private final SiBank bank;
+  private final Repository<UUID, StandingOrder> orders;
+  private final Clock clock;
+  private final Duration tick;
+  private final HierarchicalTimerWheel<StandingOrder> wheel;
+  private final Map<UUID, Timeout<StandingOrder>> timeouts = new HashMap<>();
+  private final List<Repair> repairs = new ArrayList<>();
+  private final Deque<FailedExecution> failures = new ArrayDeque<>();
+  private ScheduledExecutorService executor;
+
+
+  public StandingOrderScheduler(SiBank bank, Repository<UUID, StandingOrder> orders, Duration tick, Clock clock) {
+    this.bank = Objects.requireNonNull(bank);
+    this.orders = Objects.requireNonNull(orders);
+    this.clock = Objects.requireNonNull(clock);
+    this.tick = Objects.requireNonNull(tick);
+    this.wheel = new HierarchicalTimerWheel<>(tick.toMillis(), LEVELS, clock.millis());
+
+    for (StandingOrder order : orders.findAll()) {
+      reconcile(order);
+
+      if (order.isActive()) {
+        schedule(order);
+      }
+    }
+  }
+
+
+  public synchronized void add(StandingOrder order) {
+    orders.save(order);
+    schedule(order);
+    bank.standingOrderChanged(order);
+  }
+
+
+  public synchronized void cancel(UUID id) throws NotFoundException {
+    StandingOrder order = orders
+        .findById(id)
+        .orElseThrow(() -> new NotFoundException("Ein Dauerauftrag mit der ID " + id + " existiert nicht"));
+
+    order.cancel();
+    bank.standingOrderChanged(order);
+
+    Timeout<StandingOrder> timeout = timeouts.remove(id);
+    if (timeout != null) {
+      timeout.cancel();
+    }
+  }
+
+
+  public synchronized int getPendingCount() {
+    return wheel.size();
+  }
+
+
+  /**
+   * Die letzten höchstens {@value #MAX_FAILURES} fehlgeschlagenen Buchungen,
+   * die älteste zuerst.
+   */
+  public synchronized List<FailedExecution> getFailures() {
+    return List.copyOf(failures);
+  }
+
+
+  public int runDue() {
+    return runDue(clock.instant());
+  }
+
+
+  /**
+   * Führt alle bis {@code now} fälligen Aufträge aus und liefert die Anzahl
+   * der Ausführungen, deren Betrag beim Empfänger gutgeschrieben wurde.
+   * <p>
+   * Die fälligen Aufträge werden unter der Sperre des Schedulers aus dem Rad
+   * genommen, gebucht wird erst danach. {@link SiBank#submitTransaction(Transaction)}
+   * kann auf einen Schreibvorgang warten, der seinerseits {@link #persist()}
+   * und damit diese Sperre braucht. Verpasste Termine eines Auftrags werden
+   * nacheinander gebucht, je Runde der nächste Termin aller Aufträge.
+   */
+  public int runDue(Instant now) {
+    List<Repair> repairing;
+    List<StandingOrder> due = new ArrayList<>();
+
+    synchronized (this) {
+      repairing = new ArrayList<>(repairs);
+      repairs.clear();
+      wheel.advanceTo(now.toEpochMilli(), due::add);
+      due.forEach(order -> timeouts.remove(order.getId()));
+    }
+
+    int executed = repair(repairing);
+    List<StandingOrder> round = due;
+
+    while (!(round = dueAt(round, now)).isEmpty()) {
+      List<DueExecution> withdrawn = withdraw(round);
+      executed += settle(withdrawn);
+      round = new ArrayList<>();
+
+      synchronized (this) {
+        for (DueExecution execution : withdrawn) {
+          execution.order().advance();
+          bank.standingOrderChanged(execution.order());
+          round.add(execution.order());
+        }
+      }
+    }
+
+    synchronized (this) {
+      for (StandingOrder order : due) {
+        if (order.isActive()) {
+          schedule(order);
+        }
+      }
+    }
+
+    return executed;
+  }
+
+
+  public synchronized void start() {
+    if (executor != null) {
+      return;
+    }
+
+    executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "standing-orders");
+      thread.setDaemon(true);
+      return thread;
+    });
+
+    executor.scheduleAtFixedRate(this::runDueSafely, 0L, tick.toMillis(), TimeUnit.MILLISECONDS);
+  }
+
+
+  public synchronized void persist() throws IOException {
+    orders.persist();
+  }
+
+
+  @Override
+  public synchronized void close() {
+    if (executor != null) {
+      executor.shutdown();
+      executor = null;
+    }
+  }
+
+
+  private void schedule(StandingOrder order) {
+    timeouts.put(order.getId(), wheel.schedule(order, order.getNextExecution().toEpochMilli()));
+  }
+
+
+  private static List<StandingOrder> dueAt(List<StandingOrder> candidates, Instant now) {
+    List<StandingOrder> due = new ArrayList<>();
+
+    for (StandingOrder order : candidates) {
+      if (order.isActive() && !order.getNextExecution().isAfter(now)) {
+        due.add(order);
+      }
+    }
+
+    return due;
+  }
+
+
+  /**
+   * Bucht die Abbuchungen für den nächsten Termin jedes Auftrags und liefert
+   * die Termine, deren Abbuchung gelungen ist.
+   */
+  private List<DueExecution> withdraw(List<StandingOrder> round) {
+    List<Execution> withdrawals = new ArrayList<>();
+
+    for (StandingOrder order : round) {
+      Instant executionTime = order.getNextExecution();
+      withdrawals.add(new Execution(order, executionTime,
+          bank.submitTransaction(order.withdrawalFor(executionTime))));
+    }
+
+    List<DueExecution> withdrawn = new ArrayList<>();
+
+    for (Execution withdrawal : withdrawals) {
+      if (succeeded(withdrawal)) {
+        withdrawn.add(new DueExecution(withdrawal.order(), withdrawal.executionTime()));
+      }
+    }
+
+    return withdrawn;
+  }
+
+
+  /**
+   * Schreibt die abgebuchten Beträge den Empfängern gut und bucht sie zurück,
+   * wo das scheitert. Scheitert auch die Rückbuchung, wird der Termin beim
+   * nächsten Tick erneut ausgeglichen. Liefert die Anzahl der Gutschriften.
+   */
+  private int settle(List<DueExecution> withdrawn) {
+    List<Execution> deposits = new ArrayList<>();
+
+    for (DueExecution execution : withdrawn) {
+      StandingOrder order = execution.order();
+      deposits.add(new Execution(order, execution.executionTime(),
+          bank.submitTransaction(order.depositFor(execution.executionTime()))));
+    }
+
+    List<Execution> refunds = new ArrayList<>();
+    int deposited = 0;
+
+    for (Execution deposit : deposits) {
+      if (succeeded(deposit)) {
+        deposited++;
+      } else {
+        StandingOrder order = deposit.order();
+        refunds.add(new Execution(order, deposit.executionTime(),
+            bank.submitTransaction(order.refundFor(deposit.executionTime()))));
+      }
+    }
+
+    for (Execution refund : refunds) {
+      if (!succeeded(refund)) {
+        synchronized (this) {
+          repairs.add(new Repair(refund.order(), refund.executionTime(), false));
+        }
+      }
+    }
+
+    return deposited;
+  }
+
+
+  /**
+   * Holt fehlende Buchungen bereits gezählter Ausführungen nach: zuerst
+   * fehlende Abbuchungen, danach Gutschriften oder Rückbuchungen.
+   */
+  private int repair(List<Repair> repairing) {
+    List<DueExecution> unsettled = new ArrayList<>();
+
+    for (Repair repair : repairing) {
+      StandingOrder order = repair.order();
+
+      if (!repair.withdrawal()) {
+        unsettled.add(new DueExecution(order, repair.executionTime()));
+        continue;
+      }
+
+      Execution withdrawal = new Execution(order, repair.executionTime(),
+          bank.submitTransaction(order.withdrawalFor(repair.executionTime())));
+
+      if (!succeeded(withdrawal)) {
+        synchronized (this) {
+          repairs.add(repair);
+        }
+      }
+    }
+
+    return settle(unsettled);
+  }
+
+
+  /**
+   * Gleicht den gespeicherten Zähler eines Auftrags mit den gespeicherten
+   * Buchungen ab. Eine Ausführung gilt als gebucht, sobald eine ihrer
+   * Buchungen in der Historie steht.
+   */
+  private void reconcile(StandingOrder order) {
+    Instant last;
+    while ((last = order.getLastExecution()) != null && !anyLegBooked(order, last)) {
+      order.rewind();
+    }
+
+    if (last != null) {
+      checkLegs(order, last);
+    }
+
+    Instant next;
+    while (anyLegBooked(order, next = order.getNextExecution())) {
+      checkLegs(order, next);
+      order.advance();
+    }
+  }
+
+
+  private boolean anyLegBooked(StandingOrder order, Instant executionTime) {
+    return booked(order.withdrawalFor(executionTime))
+        || booked(order.depositFor(executionTime))
+        || booked(order.refundFor(executionTime));
+  }
+
+
+  private void checkLegs(StandingOrder order, Instant executionTime) {
+    if (!booked(order.withdrawalFor(executionTime))) {
+      repairs.add(new Repair(order, executionTime, true));
+    }
+
+    if (!booked(order.depositFor(executionTime)) && !booked(order.refundFor(executionTime))) {
+      repairs.add(new Repair(order, executionTime, false));
+    }
+  }
+
+
+  private boolean booked(Transaction expected) {
+    Account account;
+
+    try {
+      account = bank.getAccount(expected.getIban());
+    } catch (NotFoundException e) {
+      return false;
+    }
+
+    Instant timestamp = expected.getTimestamp().truncatedTo(ChronoUnit.MICROS);
+    List<Transaction> history = account.getTransactions();
+
+    for (int i = history.size() - 1; i >= 0; i--) {
+      Transaction transaction = history.get(i);
+
+      if (transaction.getClass() == expected.getClass()
+          && transaction.getTimestamp().equals(timestamp)
+          && transaction.getAmount().minorUnits() == expected.getAmount().minorUnits()
+          && Objects.equals(transaction.getPurpose(), expected.getPurpose())) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+
+  private boolean succeeded(Execution execution) {
+    try {
+      execution.result().join();
+      return true;
+    } catch (CompletionException e) {
+      String reason = e.getCause().getMessage();
+      System.err.println("Dauerauftrag " + execution.order().getId() + " zum "
+          + execution.executionTime() + " fehlgeschlagen: " + reason);
+
+      synchronized (this) {
+        if (failures.size() == MAX_FAILURES) {
+          failures.removeFirst();
+        }
+
+        failures.addLast(new FailedExecution(execution.order().getId(), execution.executionTime(), reason));
+      }
+
+      return false;
+    }
+  }
+
+
+  private void runDueSafely() {
+    try {
+      runDue();
+    } catch (RuntimeException e) {
+      System.err.println("Ausführung der Daueraufträge fehlgeschlagen: " + e.getMessage());
+    }
+  }
+
+
+  private record DueExecution(StandingOrder order, Instant executionTime) {
+  }
+
+
+  private record Execution(StandingOrder order, Instant executionTime, CompletableFuture<Transaction> result) {
+  }
+
+
+  /**
+   * Eine fehlende Buchung einer gezählten Ausführung: die Abbuchung oder
+   * deren Ausgleich durch Gutschrift bzw. Rückbuchung.
+   */
+  private record Repair(StandingOrder order, Instant executionTime, boolean withdrawal) {
+  }
+
+
+  public record FailedExecution(UUID orderId, Instant executionTime, String reason) {
+  }
+
+}
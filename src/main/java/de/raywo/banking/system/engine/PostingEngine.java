@@ -0,0 +1,225 @@
+package de.raywo.banking.system.engine;
+
+import de.raywo.banking.domain.Account;
+import de.raywo.banking.domain.Transaction;
+import de.raywo.banking.system.NotFoundException;
+import de.raywo.banking.system.events.BatchEventProcessor;
+import de.raywo.banking.system.events.RingBuffer;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Bucht die über sie eingereichten Transaktionen nach dem
+ * Single-Writer-Prinzip.
+ * <p>
+ * Beliebig viele Threads reichen Buchungen über {@link #submit(Transaction)}
+ * ein; sie werden in einem {@link RingBuffer} in eine feste Reihenfolge
+ * gebracht. Genau ein Thread wendet sie auf die Konten an.
+ * <p>
+ * Die Engine ist dabei nicht der einzige Schreiber: Vormerkungen, der
+ * Bulk-Import und Aufrufe direkt am Konto buchen an ihr vorbei. Deshalb
+ * bucht auch sie über das synchronisierte
+ * {@link Account#makeTransaction(Transaction)}, und jedes Ereignis läuft wie
+ * jede andere Buchung über die Sperre des Ereignisstroms. Solange nur die
+ * Engine schreibt, sind diese Sperren unbestritten und billig; sperrfrei ist
+ * die Engine aber nicht. Sie legt nur für ihre eigenen Buchungen eine
+ * Reihenfolge fest und sichert sie stapelweise.
+ * <p>
+ * Zwei nachgelagerte Stufen warten stapelweise, bis das Journal die
+ * Buchungen gesichert hat, und beantworten danach die Anfragen. Das Journal ist das des Ereignisstroms; die Buchungen
+ * gelangen über den {@link de.raywo.banking.domain.TransactionListener} der
+ * Konten hinein. Scheitert das Sichern, schlagen die Anfragen des Stapels
+ * fehl, obwohl die Buchungen bereits ausgeführt sind.
+ */
+public class PostingEngine implements AutoCloseable {
+
+  public static final int DEFAULT_CAPACITY = 16384;
+
+  private final Function<String, Account> accounts;
+  private final Flushable journal;
+  private final RingBuffer<PostingSlot> ringBuffer;
+  private final List<BatchEventProcessor<PostingSlot>> processors = new ArrayList<>();
+  private final List<Thread> threads = new ArrayList<>();
+  // Einreichende teilen sich die Lesesperre, close() nimmt die Schreibsperre.
+  private final ReadWriteLock lifecycle = new ReentrantReadWriteLock();
+  private boolean closed;
+  private long firstUnflushed;
+
+
+  public PostingEngine(Function<String, Account> accounts) {
+    this(accounts, null, DEFAULT_CAPACITY);
+  }
+
+
+  public PostingEngine(Function<String, Account> accounts, Flushable journal, int capacity) {
+    this.accounts = Objects.requireNonNull(accounts);
+    this.journal = journal;
+    this.ringBuffer = new RingBuffer<>(capacity, PostingSlot::new);
+
+    BatchEventProcessor<PostingSlot> businessLogic = new BatchEventProcessor<>(ringBuffer, this::apply);
+    BatchEventProcessor<PostingSlot> lastStage = businessLogic;
+    processors.add(businessLogic);
+
+    if (journal != null) {
+      lastStage = new BatchEventProcessor<>(ringBuffer, this::journal, businessLogic.getSequence());
+      processors.add(lastStage);
+    }
+
+    BatchEventProcessor<PostingSlot> replies =
+        new BatchEventProcessor<>(ringBuffer, this::reply, lastStage.getSequence());
+    processors.add(replies);
+    ringBuffer.addGatingSequence(replies.getSequence());
+
+    String[] names = journal == null
+        ? new String[]{"posting-logic", "posting-replies"}
+        : new String[]{"posting-logic", "posting-journal", "posting-replies"};
+
+    for (int i = 0; i < processors.size(); i++) {
+      Thread thread = new Thread(processors.get(i), names[i]);
+      thread.setDaemon(true);
+      threads.add(thread);
+      thread.start();
+    }
+  }
+
+
+  public CompletableFuture<Transaction> submit(Transaction transaction) {
+    Objects.requireNonNull(transaction);
+
+    lifecycle.readLock().lock();
+    try {
+      if (closed) {
+        return CompletableFuture.failedFuture(
+            new IllegalStateException("Die Buchungsmaschine wurde bereits beendet."));
+      }
+
+      CompletableFuture<Transaction> reply = new CompletableFuture<>();
+      long sequence = ringBuffer.next();
+
+      try {
+        PostingSlot slot = ringBuffer.get(sequence);
+        slot.transaction = transaction;
+        slot.reply = reply;
+        slot.failure = null;
+      } finally {
+        ringBuffer.publish(sequence);
+      }
+
+      return reply;
+    } finally {
+      lifecycle.readLock().unlock();
+    }
+  }
+
+
+  /**
+   * Nimmt keine Buchungen mehr an, arbeitet die eingereichten ab und hält
+   * die Stufen an. Anfragen, die danach noch offen sind, schlagen fehl.
+   */
+  @Override
+  public void close() {
+    lifecycle.writeLock().lock();
+    try {
+      if (closed) {
+        return;
+      }
+      closed = true;
+    } finally {
+      lifecycle.writeLock().unlock();
+    }
+
+    long last = ringBuffer.getCursor();
+    BatchEventProcessor<PostingSlot> replies = processors.get(processors.size() - 1);
+
+    while (replies.getSequence().get() < last && !Thread.currentThread().isInterrupted()) {
+      Thread.yield();
+    }
+
+    processors.forEach(BatchEventProcessor::halt);
+
+    for (Thread thread : threads) {
+      try {
+        thread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    IllegalStateException closing = new IllegalStateException("Die Buchungsmaschine wurde beendet.");
+    for (long sequence = replies.getSequence().get() + 1; sequence <= last; sequence++) {
+      PostingSlot slot = ringBuffer.get(sequence);
+      if (slot.reply != null) {
+        slot.reply.completeExceptionally(closing);
+        slot.clear();
+      }
+    }
+  }
+
+
+  private void apply(PostingSlot slot, long sequence, boolean endOfBatch) {
+    Transaction transaction = slot.transaction;
+
+    try {
+      Account account = accounts.apply(transaction.getIban());
+      if (account == null) {
+        throw new NotFoundException("Ein Konto mit der IBAN " + transaction.getIban() + " existiert nicht");
+      }
+
+      account.makeTransaction(transaction);
+    } catch (Exception e) {
+      slot.failure = e;
+    }
+  }
+
+
+  /**
+   * Sichert am Ende jedes Stapels das Journal. Scheitert das, erhalten alle
+   * seit dem letzten Sichern ausgeführten Buchungen den Fehler.
+   */
+  private void journal(PostingSlot slot, long sequence, boolean endOfBatch) {
+    if (!endOfBatch) {
+      return;
+    }
+
+    try {
+      journal.flush();
+    } catch (IOException | RuntimeException e) {
+      UncheckedIOException failure = new UncheckedIOException(
+          "Die Buchung wurde ausgeführt, aber nicht im Journal gesichert.",
+          e instanceof IOException io ? io : new IOException(e));
+
+      for (long s = firstUnflushed; s <= sequence; s++) {
+        PostingSlot unflushed = ringBuffer.get(s);
+        if (unflushed.failure == null) {
+          unflushed.failure = failure;
+        }
+      }
+    }
+
+    firstUnflushed = sequence + 1;
+  }
+
+
+  private void reply(PostingSlot slot, long sequence, boolean endOfBatch) {
+    CompletableFuture<Transaction> reply = slot.reply;
+    Transaction transaction = slot.transaction;
+    Exception failure = slot.failure;
+    slot.clear();
+
+    if (failure == null) {
+      reply.complete(transaction);
+    } else {
+      reply.completeExceptionally(failure);
+    }
+  }
+
+}
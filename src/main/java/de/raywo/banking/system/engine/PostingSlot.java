@@ -0,0 +1,20 @@
+package de.raywo.banking.system.engine;
+
+import de.raywo.banking.domain.Transaction;
+
+import java.util.concurrent.CompletableFuture;
+
+class PostingSlot {
+
+  Transaction transaction;
+  CompletableFuture<Transaction> reply;
+  Exception failure;
+
+
+  void clear() {
+    transaction = null;
+    reply = null;
+    failure = null;
+  }
+
+}
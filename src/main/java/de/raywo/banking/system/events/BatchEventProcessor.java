@@ -0,0 +1,93 @@
+package de.raywo.banking.system.events;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Arbeitet die Einträge eines {@link RingBuffer} in Stapeln ab.
+ * <p>
+ * Ohne Abhängigkeiten verarbeitet der Prozessor alles, was im Ringpuffer
+ * veröffentlicht wurde. Mit Abhängigkeiten läuft er hinter den angegebenen
+ * Sequenzen anderer Prozessoren her und bildet so eine Pipeline-Stufe.
+ */
+public class BatchEventProcessor<E> implements Runnable {
+
+  private final RingBuffer<E> ringBuffer;
+  private final EventHandler<? super E> handler;
+  private final AtomicLong[] dependencies;
+  private final AtomicLong sequence;
+  private volatile boolean running = true;
+
+
+  public BatchEventProcessor(RingBuffer<E> ringBuffer, EventHandler<? super E> handler, AtomicLong... dependencies) {
+    this.ringBuffer = Objects.requireNonNull(ringBuffer);
+    this.handler = Objects.requireNonNull(handler);
+    this.dependencies = dependencies.clone();
+    this.sequence = new AtomicLong(ringBuffer.getCursor());
+  }
+
+
+  public AtomicLong getSequence() {
+    return sequence;
+  }
+
+
+  public void halt() {
+    running = false;
+  }
+
+
+  @Override
+  public void run() {
+    long nextSequence = sequence.get() + 1;
+
+    while (running) {
+      long available = waitFor(nextSequence);
+      if (available < nextSequence) {
+        break;
+      }
+
+      for (long s = nextSequence; s <= available; s++) {
+        try {
+          handler.onEvent(ringBuffer.get(s), s, s == available);
+        } catch (Exception e) {
+          System.err.println("Fehler bei der Verarbeitung von Ereignis " + s + ": " + e.getMessage());
+        }
+      }
+
+      sequence.set(available);
+      nextSequence = available + 1;
+    }
+  }
+
+
+  private long waitFor(long nextSequence) {
+    int idleCount = 0;
+    long available;
+
+    while ((available = availableSequence(nextSequence)) < nextSequence) {
+      if (!running) {
+        return available;
+      }
+
+      RingBuffer.idle(idleCount++);
+    }
+
+    return available;
+  }
+
+
+  private long availableSequence(long nextSequence) {
+    if (dependencies.length == 0) {
+      return ringBuffer.highestPublished(nextSequence, ringBuffer.getCursor());
+    }
+
+    long minimum = Long.MAX_VALUE;
+    for (AtomicLong dependency : dependencies) {
+      minimum = Math.min(minimum, dependency.get());
+    }
+
+    return minimum;
+  }
+
+}
@@ -0,0 +1,7 @@
+package de.raywo.banking.system.events;
+
+public interface EventHandler<E> {
+
+  void onEvent(E event, long sequence, boolean endOfBatch) throws Exception;
+
+}
@@ -0,0 +1,48 @@
+package de.raywo.banking.system.events;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Objects;
+
+/**
+ * Speichert je Abonnent die Sequenznummer des zuletzt verarbeiteten
+ * Ereignisses in einer eigenen Datei.
+ */
+public class FileCursorStore {
+
+  private final Path directory;
+
+
+  public FileCursorStore(Path directory) {
+    this.directory = Objects.requireNonNull(directory);
+  }
+
+
+  public long load(String name) throws IOException {
+    Path file = fileOf(name);
+
+    if (Files.notExists(file)) {
+      return -1L;
+    }
+
+    return Long.parseLong(Files.readString(file).trim());
+  }
+
+
+  public void store(String name, long sequence) throws IOException {
+    Files.createDirectories(directory);
+
+    Path file = fileOf(name);
+    Path temp = directory.resolve(name + ".cursor.tmp");
+    Files.writeString(temp, Long.toString(sequence));
+    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+
+  private Path fileOf(String name) {
+    return directory.resolve(name + ".cursor");
+  }
+
+}
@@ -0,0 +1,133 @@
+package de.raywo.banking.system.events;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Ein Ringpuffer mit vorab angelegten Einträgen für mehrere Produzenten.
+ * <p>
+ * Produzenten reservieren mit {@link #next()} eine Sequenznummer, befüllen den
+ * zugehörigen Eintrag und geben ihn mit {@link #publish(long)} frei. Ist der
+ * Puffer voll, wartet {@link #next()}, bis der langsamste registrierte
+ * Konsument (Gating-Sequenz) Platz geschaffen hat.
+ */
+public class RingBuffer<E> {
+
+  private final Object[] entries;
+  private final int mask;
+  private final int indexShift;
+  private final AtomicIntegerArray availableRounds;
+  private final AtomicLong cursor = new AtomicLong(-1L);
+  private volatile AtomicLong[] gatingSequences = new AtomicLong[0];
+
+
+  public RingBuffer(int capacity, Supplier<E> factory) {
+    if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("Die Kapazität muss eine Zweierpotenz sein: " + capacity);
+    }
+
+    Objects.requireNonNull(factory);
+
+    this.entries = new Object[capacity];
+    this.mask = capacity - 1;
+    this.indexShift = Integer.numberOfTrailingZeros(capacity);
+    this.availableRounds = new AtomicIntegerArray(capacity);
+
+    for (int i = 0; i < capacity; i++) {
+      entries[i] = factory.get();
+      availableRounds.set(i, -1);
+    }
+  }
+
+
+  public int getCapacity() {
+    return entries.length;
+  }
+
+
+  public long getCursor() {
+    return cursor.get();
+  }
+
+
+  @SuppressWarnings("unchecked")
+  public E get(long sequence) {
+    return (E) entries[(int) sequence & mask];
+  }
+
+
+  public long next() {
+    long sequence = cursor.incrementAndGet();
+    long wrapPoint = sequence - entries.length;
+
+    int idleCount = 0;
+    while (wrapPoint > minimumGatingSequence(sequence)) {
+      idle(idleCount++);
+    }
+
+    return sequence;
+  }
+
+
+  public void publish(long sequence) {
+    availableRounds.lazySet((int) sequence & mask, (int) (sequence >>> indexShift));
+  }
+
+
+  public boolean isPublished(long sequence) {
+    return availableRounds.get((int) sequence & mask) == (int) (sequence >>> indexShift);
+  }
+
+
+  public long highestPublished(long lowerBound, long upperBound) {
+    for (long sequence = lowerBound; sequence <= upperBound; sequence++) {
+      if (!isPublished(sequence)) {
+        return sequence - 1;
+      }
+    }
+
+    return upperBound;
+  }
+
+
+  public synchronized void addGatingSequence(AtomicLong sequence) {
+    AtomicLong[] extended = Arrays.copyOf(gatingSequences, gatingSequences.length + 1);
+    extended[gatingSequences.length] = sequence;
+    gatingSequences = extended;
+  }
+
+
+  public synchronized void removeGatingSequence(AtomicLong sequence) {
+    gatingSequences = Arrays.stream(gatingSequences)
+        .filter(s -> s != sequence)
+        .toArray(AtomicLong[]::new);
+  }
+
+
+  private long minimumGatingSequence(long defaultValue) {
+    AtomicLong[] current = gatingSequences;
+    long minimum = defaultValue;
+
+    for (AtomicLong sequence : current) {
+      minimum = Math.min(minimum, sequence.get());
+    }
+
+    return minimum;
+  }
+
+
+  static void idle(int idleCount) {
+    if (idleCount < 100) {
+      Thread.onSpinWait();
+    } else if (idleCount < 200) {
+      Thread.yield();
+    } else {
+      LockSupport.parkNanos(50_000L);
+    }
+  }
+
+}
@@ -0,0 +1,74 @@
+package de.raywo.banking.system.events;
+
+/**
+ * Ein laufender Abonnent eines {@link TransactionEventStream}s. Jeder
+ * Abonnent verarbeitet die Ereignisse in einem eigenen Thread und in seinem
+ * eigenen Tempo.
+ */
+public class Subscription implements AutoCloseable {
+
+  private final String name;
+  private final TransactionEventStream stream;
+  private final BatchEventProcessor<TransactionEvent> processor;
+  private final Thread thread;
+
+
+  Subscription(String name, TransactionEventStream stream, BatchEventProcessor<TransactionEvent> processor,
+               Runnable body) {
+    this.name = name;
+    this.stream = stream;
+    this.processor = processor;
+    this.thread = new Thread(body, "events-" + name);
+    this.thread.setDaemon(true);
+  }
+
+
+  void start() {
+    thread.start();
+  }
+
+
+  public String getName() {
+    return name;
+  }
+
+
+  public long getSequence() {
+    return stream.toStreamSequence(processor.getSequence().get());
+  }
+
+
+  public long getLag() {
+    return stream.getLastPublishedSequence() - getSequence();
+  }
+
+
+  void awaitSequence(long sequence) {
+    int idleCount = 0;
+
+    while (getSequence() < sequence && thread.isAlive()) {
+      RingBuffer.idle(idleCount++);
+    }
+  }
+
+
+  @Override
+  public void close() {
+    processor.halt();
+
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    stream.unsubscribe(this, processor);
+  }
+
+
+  @Override
+  public String toString() {
+    return name + " (Sequenz: " + getSequence() + ", Rückstand: " + getLag() + ")";
+  }
+
+}
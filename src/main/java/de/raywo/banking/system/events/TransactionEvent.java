@@ -0,0 +1,39 @@
+package de.raywo.banking.system.events;
+
+import de.raywo.banking.domain.Transaction;
+
+public class TransactionEvent {
+
+  private long sequence;
+  private int position;
+  private Transaction transaction;
+
+
+  public long getSequence() {
+    return sequence;
+  }
+
+
+  public int getPosition() {
+    return position;
+  }
+
+
+  public Transaction getTransaction() {
+    return transaction;
+  }
+
+
+  public void set(long sequence, int position, Transaction transaction) {
+    this.sequence = sequence;
+    this.position = position;
+    this.transaction = transaction;
+  }
+
+
+  @Override
+  public String toString() {
+    return "#" + sequence + " [" + transaction.getIban() + "/" + position + "] " + transaction;
+  }
+
+}
@@ -0,0 +1,67 @@
+package de.raywo.banking.system.events;
+
+import de.raywo.banking.domain.Deposit;
+import de.raywo.banking.domain.Money;
+import de.raywo.banking.domain.Transaction;
+import de.raywo.banking.domain.Withdrawal;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Currency;
+
+/**
+ * Binäres Format eines {@link TransactionEvent}s, wie es im
+ * {@link TransactionJournal} abgelegt wird.
+ */
+public final class TransactionEventCodec {
+
+  private static final byte DEPOSIT = 'D';
+  private static final byte WITHDRAWAL = 'W';
+
+
+  private TransactionEventCodec() {
+  }
+
+
+  public static void write(DataOutput out, long sequence, int position, Transaction transaction) throws IOException {
+    Money amount = transaction.getAmount();
+
+    out.writeLong(sequence);
+    out.writeInt(position);
+    out.writeByte(transaction instanceof Deposit ? DEPOSIT : WITHDRAWAL);
+    out.writeUTF(transaction.getIban());
+    out.writeBoolean(transaction.getPurpose() != null);
+    if (transaction.getPurpose() != null) {
+      out.writeUTF(transaction.getPurpose());
+    }
+    out.writeLong(amount.minorUnits());
+    out.writeUTF(amount.currency().getCurrencyCode());
+    out.writeLong(transaction.getTimestamp().getEpochSecond());
+    out.writeInt(transaction.getTimestamp().getNano());
+  }
+
+
+  public static void read(DataInput in, TransactionEvent target) throws IOException {
+    long sequence = in.readLong();
+    int position = in.readInt();
+    byte type = in.readByte();
+    String iban = in.readUTF();
+    String purpose = in.readBoolean() ? in.readUTF() : null;
+    long minorUnits = in.readLong();
+    Currency currency = Currency.getInstance(in.readUTF());
+    Instant timestamp = Instant.ofEpochSecond(in.readLong(), in.readInt());
+
+    Money amount = new Money(BigDecimal.valueOf(minorUnits, 2), currency);
+    Transaction transaction = switch (type) {
+      case DEPOSIT -> new Deposit(iban, purpose, amount, timestamp);
+      case WITHDRAWAL -> new Withdrawal(iban, purpose, amount, timestamp);
+      default -> throw new IOException("Unbekannter Transaktionstyp: " + type);
+    };
+
+    target.set(sequence, position, transaction);
+  }
+
+}
@@ -0,0 +1,245 @@
+package de.raywo.banking.system.events;
+
+import de.raywo.banking.domain.Account;
+import de.raywo.banking.domain.Transaction;
+import de.raywo.banking.domain.TransactionListener;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Veröffentlicht jede gebuchte Transaktion als {@link TransactionEvent} in
+ * einem {@link RingBuffer}. Abonnenten lesen unabhängig voneinander in
+ * Stapeln; ist der Puffer voll, warten die buchenden Threads auf den
+ * langsamsten Abonnenten.
+ * <p>
+ * Unter der Sperre des Kontos wird ein Ereignis nur vorgemerkt. In den
+ * Ringpuffer gelangt es erst, wenn das Konto die Sperre freigegeben hat; ein
+ * voller Puffer bremst so die buchenden Threads, hält aber keine Konten
+ * gesperrt. Die Reihenfolge der Ereignisse eines Kontos bleibt erhalten.
+ * <p>
+ * Mit einem {@link TransactionJournal} werden alle Ereignisse zusätzlich
+ * fortgeschrieben. Dauerhafte Abonnenten merken sich ihre Position in einem
+ * {@link FileCursorStore} und erhalten nach einem Neustart zuerst die
+ * verpassten Ereignisse aus dem Journal. Ging ein Ereignis beim Schreiben
+ * ins Journal verloren, meldet {@link #flush()} das bei jedem weiteren Aufruf.
+ */
+public class TransactionEventStream implements TransactionListener, Flushable, AutoCloseable {
+
+  public static final int DEFAULT_CAPACITY = 8192;
+
+  private final RingBuffer<TransactionEvent> ringBuffer;
+  private final TransactionJournal journal;
+  private final long baseSequence;
+  private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+  private final Subscription journalSubscription;
+  private final Queue<PendingEvent> pending = new ConcurrentLinkedQueue<>();
+  private final Object publishLock = new Object();
+  private volatile IOException journalFailure;
+
+
+  public TransactionEventStream(int capacity) {
+    this(capacity, null);
+  }
+
+
+  public TransactionEventStream(int capacity, TransactionJournal journal) {
+    this.ringBuffer = new RingBuffer<>(capacity, TransactionEvent::new);
+    this.journal = journal;
+    this.baseSequence = journal == null ? 0L : journal.getLastSequence() + 1;
+    this.journalSubscription = journal == null ? null : subscribe("journal", this::writeToJournal);
+  }
+
+
+  @Override
+  public void transactionPosted(Account account, Transaction transaction, int position) {
+    pending.add(new PendingEvent(Objects.requireNonNull(transaction), position));
+  }
+
+
+  @Override
+  public void postingsCompleted(Account account) {
+    drain();
+  }
+
+
+  public long publish(Transaction transaction, int position) {
+    Objects.requireNonNull(transaction);
+
+    synchronized (publishLock) {
+      drainPending();
+      return publishNow(transaction, position);
+    }
+  }
+
+
+  /**
+   * Veröffentlicht alle vorgemerkten Ereignisse. Ist der Ringpuffer voll,
+   * wartet der Aufrufer auf den langsamsten Abonnenten.
+   */
+  public void drain() {
+    synchronized (publishLock) {
+      drainPending();
+    }
+  }
+
+
+  private void drainPending() {
+    PendingEvent event;
+    while ((event = pending.poll()) != null) {
+      publishNow(event.transaction(), event.position());
+    }
+  }
+
+
+  private long publishNow(Transaction transaction, int position) {
+    long sequence = ringBuffer.next();
+    long streamSequence = toStreamSequence(sequence);
+
+    try {
+      ringBuffer.get(sequence).set(streamSequence, position, transaction);
+    } finally {
+      ringBuffer.publish(sequence);
+    }
+
+    return streamSequence;
+  }
+
+
+  public long getLastPublishedSequence() {
+    return toStreamSequence(ringBuffer.getCursor());
+  }
+
+
+  public List<Subscription> getSubscriptions() {
+    return List.copyOf(subscriptions);
+  }
+
+
+  public Subscription subscribe(String name, EventHandler<TransactionEvent> handler) {
+    Objects.requireNonNull(handler);
+
+    BatchEventProcessor<TransactionEvent> processor = new BatchEventProcessor<>(ringBuffer,
+        (event, sequence, endOfBatch) -> handler.onEvent(event, event.getSequence(), endOfBatch));
+
+    return start(name, processor, processor);
+  }
+
+
+  public Subscription subscribe(String name, EventHandler<TransactionEvent> handler, FileCursorStore cursors)
+      throws IOException {
+    Objects.requireNonNull(handler);
+    Objects.requireNonNull(cursors);
+
+    if (journal == null) {
+      throw new IllegalStateException("Dauerhafte Abonnements benötigen ein Journal.");
+    }
+
+    long resumeAfter = cursors.load(name);
+    EventHandler<TransactionEvent> durableHandler = (event, sequence, endOfBatch) -> {
+      handler.onEvent(event, event.getSequence(), endOfBatch);
+      if (endOfBatch) {
+        cursors.store(name, event.getSequence());
+      }
+    };
+
+    BatchEventProcessor<TransactionEvent> processor = new BatchEventProcessor<>(ringBuffer, durableHandler);
+    long liveFrom = toStreamSequence(processor.getSequence().get());
+
+    Runnable body = () -> {
+      if (resumeAfter < liveFrom) {
+        try {
+          journalSubscription.awaitSequence(liveFrom);
+          journal.replay(resumeAfter, liveFrom, durableHandler);
+        } catch (Exception e) {
+          System.err.println("Wiederholung für Abonnent " + name + " fehlgeschlagen: " + e.getMessage());
+        }
+      }
+
+      processor.run();
+    };
+
+    return start(name, processor, body);
+  }
+
+
+  public void flush() throws IOException {
+    drain();
+
+    if (journal == null) {
+      return;
+    }
+
+    journalSubscription.awaitSequence(toStreamSequence(ringBuffer.getCursor()));
+
+    IOException failure = journalFailure;
+    if (failure != null) {
+      throw new IOException("Das Journal ist unvollständig: " + failure.getMessage(), failure);
+    }
+
+    journal.flush();
+  }
+
+
+  @Override
+  public void close() {
+    for (Subscription subscription : subscriptions) {
+      subscription.close();
+    }
+
+    if (journal != null) {
+      try {
+        journal.close();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+
+  long toStreamSequence(long ringSequence) {
+    return baseSequence + ringSequence;
+  }
+
+
+  void unsubscribe(Subscription subscription, BatchEventProcessor<TransactionEvent> processor) {
+    subscriptions.remove(subscription);
+    ringBuffer.removeGatingSequence(processor.getSequence());
+  }
+
+
+  private Subscription start(String name, BatchEventProcessor<TransactionEvent> processor, Runnable body) {
+    ringBuffer.addGatingSequence(processor.getSequence());
+
+    Subscription subscription = new Subscription(name, this, processor, body);
+    subscriptions.add(subscription);
+    subscription.start();
+
+    return subscription;
+  }
+
+
+  private void writeToJournal(TransactionEvent event, long sequence, boolean endOfBatch) throws IOException {
+    try {
+      journal.append(event);
+
+      if (endOfBatch) {
+        journal.flush();
+      }
+    } catch (IOException e) {
+      journalFailure = e;
+      throw e;
+    }
+  }
+
+
+  private record PendingEvent(Transaction transaction, int position) {
+  }
+
+}
@@ -0,0 +1,254 @@
+package de.raywo.banking.system.events;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Ein Journal, an das alle veröffentlichten {@link TransactionEvent}s
+ * angehängt werden. Jeder Datensatz ist mit seiner Länge gerahmt, sodass ein
+ * beim Absturz abgeschnittener letzter Datensatz beim Öffnen erkannt und
+ * entfernt werden kann.
+ * <p>
+ * Erreicht die Datei die Segmentgröße, wird sie in
+ * {@code <datei>.<letzte Sequenz>} umbenannt und ein neues Segment begonnen.
+ * Nur die jüngsten abgeschlossenen Segmente bleiben erhalten; ältere
+ * Ereignisse kann {@link #replay} nicht mehr liefern.
+ */
+public class TransactionJournal implements Closeable {
+
+  public static final long DEFAULT_SEGMENT_SIZE = 64L * 1024 * 1024;
+  public static final int DEFAULT_RETAINED_SEGMENTS = 4;
+  private static final int SEQUENCE_DIGITS = 19;
+
+  private final Path file;
+  private final long segmentSize;
+  private final int retainedSegments;
+  private final ByteArrayOutputStream recordBuffer = new ByteArrayOutputStream(128);
+  private final DataOutputStream recordOut = new DataOutputStream(recordBuffer);
+  private DataOutputStream out;
+  private long size;
+  private long lastSequence;
+
+
+  private TransactionJournal(Path file, long segmentSize, int retainedSegments, long size, long lastSequence)
+      throws IOException {
+    this.file = file;
+    this.segmentSize = segmentSize;
+    this.retainedSegments = retainedSegments;
+    this.size = size;
+    this.lastSequence = lastSequence;
+    this.out = openSegment(file);
+  }
+
+
+  public static TransactionJournal open(Path file) throws IOException {
+    return open(file, DEFAULT_SEGMENT_SIZE, DEFAULT_RETAINED_SEGMENTS);
+  }
+
+
+  public static TransactionJournal open(Path file, long segmentSize, int retainedSegments) throws IOException {
+    Objects.requireNonNull(file);
+
+    if (segmentSize <= 0 || retainedSegments < 0) {
+      throw new IllegalArgumentException("Ungültige Segmentgröße oder Anzahl aufzubewahrender Segmente.");
+    }
+
+    Path parent = file.getParent();
+    if (parent != null) {
+      Files.createDirectories(parent);
+    }
+
+    List<Path> segments = segments(file);
+    long lastSequence = segments.isEmpty() ? -1L : sequenceOf(segments.get(segments.size() - 1));
+    long validLength = 0L;
+
+    if (Files.exists(file)) {
+      try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+        while (true) {
+          int length = in.readInt();
+          byte[] record = new byte[length];
+          in.readFully(record);
+
+          lastSequence = readLong(record);
+          validLength += Integer.BYTES + length;
+        }
+      } catch (EOFException e) {
+        // Dateiende erreicht, ggf. mitten in einem unvollständigen Datensatz
+      }
+
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+        channel.truncate(validLength);
+      }
+    }
+
+    return new TransactionJournal(file, segmentSize, retainedSegments, validLength, lastSequence);
+  }
+
+
+  public Path getFile() {
+    return file;
+  }
+
+
+  public synchronized long getLastSequence() {
+    return lastSequence;
+  }
+
+
+  public synchronized void append(TransactionEvent event) throws IOException {
+    recordBuffer.reset();
+    TransactionEventCodec.write(recordOut, event.getSequence(), event.getPosition(), event.getTransaction());
+
+    out.writeInt(recordBuffer.size());
+    recordBuffer.writeTo(out);
+    lastSequence = event.getSequence();
+    size += Integer.BYTES + recordBuffer.size();
+
+    if (size >= segmentSize) {
+      roll();
+    }
+  }
+
+
+  public synchronized void flush() throws IOException {
+    out.flush();
+  }
+
+
+  /**
+   * Spielt alle noch vorhandenen Ereignisse mit einer Sequenznummer im
+   * Bereich {@code (afterSequence, upToSequence]} erneut ab.
+   */
+  public void replay(long afterSequence, long upToSequence, EventHandler<TransactionEvent> handler) throws Exception {
+    List<InputStream> sources = new ArrayList<>();
+
+    // Geöffnete Dateien bleiben lesbar, auch wenn sie währenddessen umbenannt
+    // oder gelöscht werden.
+    synchronized (this) {
+      out.flush();
+
+      for (Path segment : segments(file)) {
+        if (sequenceOf(segment) > afterSequence) {
+          sources.add(Files.newInputStream(segment));
+        }
+      }
+      sources.add(Files.newInputStream(file));
+    }
+
+    TransactionEvent event = new TransactionEvent();
+    boolean first = true;
+
+    try {
+      for (InputStream source : sources) {
+        try (var in = new DataInputStream(new BufferedInputStream(source))) {
+          while (true) {
+            byte[] record = new byte[in.readInt()];
+            in.readFully(record);
+
+            long sequence = readLong(record);
+            if (sequence <= afterSequence) {
+              continue;
+            }
+
+            if (sequence > upToSequence) {
+              return;
+            }
+
+            if (first && sequence > afterSequence + 1) {
+              System.err.println("Journal " + file + " enthält die Ereignisse " + (afterSequence + 1)
+                  + " bis " + (sequence - 1) + " nicht mehr.");
+            }
+            first = false;
+
+            TransactionEventCodec.read(new DataInputStream(new ByteArrayInputStream(record)), event);
+            handler.onEvent(event, sequence, sequence == upToSequence);
+          }
+        } catch (EOFException e) {
+          // Ende des Segments
+        }
+      }
+    } finally {
+      for (InputStream source : sources) {
+        source.close();
+      }
+    }
+  }
+
+
+  @Override
+  public synchronized void close() throws IOException {
+    out.close();
+  }
+
+
+  /**
+   * Schließt das aktuelle Segment ab und entfernt Segmente, die über die
+   * Aufbewahrung hinausgehen.
+   */
+  private void roll() throws IOException {
+    out.close();
+    String suffix = String.format("%0" + SEQUENCE_DIGITS + "d", lastSequence);
+    Files.move(file, file.resolveSibling(file.getFileName() + "." + suffix));
+    out = openSegment(file);
+    size = 0L;
+
+    List<Path> segments = segments(file);
+    for (int i = 0; i < segments.size() - retainedSegments; i++) {
+      Files.deleteIfExists(segments.get(i));
+    }
+  }
+
+
+  private static DataOutputStream openSegment(Path file) throws IOException {
+    return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(
+        file,
+        StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE,
+        StandardOpenOption.APPEND), 64 * 1024));
+  }
+
+
+  /**
+   * Die abgeschlossenen Segmente, aufsteigend nach ihrer letzten Sequenz.
+   */
+  private static List<Path> segments(Path file) throws IOException {
+    Path directory = file.toAbsolutePath().getParent();
+    String prefix = file.getFileName() + ".";
+
+    try (Stream<Path> entries = Files.list(directory)) {
+      return entries
+          .filter(entry -> {
+            String name = entry.getFileName().toString();
+            return name.startsWith(prefix)
+                && name.length() == prefix.length() + SEQUENCE_DIGITS
+                && name.substring(prefix.length()).chars().allMatch(Character::isDigit);
+          })
+          .sorted()
+          .toList();
+    }
+  }
+
+
+  private static long sequenceOf(Path segment) {
+    String name = segment.getFileName().toString();
+    return Long.parseLong(name.substring(name.length() - SEQUENCE_DIGITS));
+  }
+
+
+  private static long readLong(byte[] record) {
+    long value = 0L;
+    for (int i = 0; i < Long.BYTES; i++) {
+      value = (value << 8) | (record[i] & 0xFF);
+    }
+
+    return value;
+  }
+
+}
@@ -0,0 +1,363 @@
+package de.raywo.banking.system.importer;
+
+import de.raywo.banking.domain.*;
+import de.raywo.banking.system.SiBank;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Lädt einen migrierten Bestand aus drei CSV-Dateien in die Bank:
+ * <pre>
+ * Kunden:  id;name;city
+ * Konten:  iban;type;owner;status;limit;interestRate
+ * Umsätze: iban;type;amount;timestamp;purpose
+ * </pre>
+ * Kontoarten sind {@code CURRENT} und {@code SAVINGS}, der Status ist
+ * {@code ACTIVE} oder {@code INACTIVE}; Dispositionsrahmen und Zinssatz
+ * dürfen leer sein. Umsätze sind {@code +} (Einzahlung) oder {@code -}
+ * (Auszahlung) mit Betrag in Euro und Zeitpunkt in UTC, etwa
+ * {@code DE00000000000000000042;-;19.99;2024-01-31T12:00:00Z;Miete}.
+ * <p>
+ * Jede Datei wird speicherabgebildet, in Abschnitte geteilt und parallel
+ * gelesen. Kunden und Konten entstehen abseits der Bank. Die Umsätze eines
+ * Kontos werden in Dateireihenfolge gebucht, verschiedene Konten parallel.
+ * Erst danach übernimmt {@link SiBank#importPortfolio(Collection, Collection)}
+ * den Bestand und speichert ihn mit einem Schreibvorgang. Eine fehlerhafte
+ * Zeile bricht den Import ab, bevor die Bank verändert wird; Umsätze ohne
+ * Deckung lehnt das Konto ab, sie werden im Ergebnis gemeldet.
+ */
+public class BulkImporter {
+
+  public static final int MAX_REPORTED_REJECTIONS = 100;
+  private static final int CACHE_SIZE = 4096;
+
+  private final SiBank bank;
+  private final int chunks;
+
+
+  public BulkImporter(SiBank bank) {
+    this.bank = Objects.requireNonNull(bank);
+    this.chunks = 4 * Runtime.getRuntime().availableProcessors();
+  }
+
+
+  public ImportResult importFiles(Path customersFile, Path accountsFile, Path transactionsFile)
+      throws IOException, ImportException {
+    long start = System.nanoTime();
+
+    List<Customer> customers = new ArrayList<>();
+    parse(customersFile, this::readCustomers).forEach(part -> customers.addAll(part.rows()));
+
+    Map<UUID, Customer> owners = new HashMap<>();
+    bank.getCustomers().forEach(customer -> owners.put(customer.getId(), customer));
+    for (Customer customer : customers) {
+      if (owners.put(customer.getId(), customer) != null) {
+        throw new ImportException(customersFile.getFileName() + ": Der Kunde " + customer.getId()
+            + " ist mehrfach enthalten oder existiert bereits.");
+      }
+    }
+
+    Map<String, Account> accounts = new LinkedHashMap<>();
+    for (Parsed<List<Account>> part : parse(accountsFile, chunk -> readAccounts(chunk, owners))) {
+      for (Account account : part.rows()) {
+        if (accounts.put(account.getIban(), account) != null) {
+          throw new ImportException(accountsFile.getFileName() + ": Das Konto " + account.getIban()
+              + " ist mehrfach enthalten.");
+        }
+      }
+    }
+
+    List<Parsed<TransactionRows>> transactions = parse(transactionsFile, chunk -> readTransactions(chunk, accounts));
+    long parseMillis = millisSince(start);
+
+    start = System.nanoTime();
+    Postings postings = post(transactionsFile.getFileName().toString(), transactions);
+    long postMillis = millisSince(start);
+
+    start = System.nanoTime();
+    try {
+      bank.importPortfolio(customers, accounts.values());
+    } catch (IllegalArgumentException e) {
+      throw new ImportException(e.getMessage(), e);
+    }
+    long persistMillis = millisSince(start);
+
+    return new ImportResult(
+        customers.size(),
+        accounts.size(),
+        postings.posted.sum(),
+        postings.rejected.sum(),
+        postings.reported(),
+        parseMillis,
+        postMillis,
+        persistMillis
+    );
+  }
+
+
+  private List<Customer> readCustomers(CsvChunk chunk) {
+    StringCache cities = new StringCache(CACHE_SIZE);
+    List<Customer> customers = new ArrayList<>();
+
+    while (chunk.nextLine()) {
+      chunk.nextField();
+      UUID id = chunk.uuid();
+      chunk.nextField();
+      String name = chunk.text();
+      chunk.nextField();
+      String city = chunk.text(cities);
+      chunk.endOfLine();
+
+      customers.add(new Customer(id, name, city));
+    }
+
+    return customers;
+  }
+
+
+  private List<Account> readAccounts(CsvChunk chunk, Map<UUID, Customer> owners) {
+    List<Account> accounts = new ArrayList<>();
+
+    while (chunk.nextLine()) {
+      chunk.nextField();
+      String iban = chunk.text();
+      Iban.of(iban);
+
+      chunk.nextField();
+      boolean current = chunk.is("CURRENT");
+      if (!current && !chunk.is("SAVINGS")) {
+        throw new IllegalArgumentException("Unbekannte Kontoart: " + chunk.text());
+      }
+
+      chunk.nextField();
+      UUID ownerId = chunk.uuid();
+      Customer owner = owners.get(ownerId);
+      if (owner == null) {
+        throw new IllegalArgumentException("Unbekannter Kunde: " + ownerId);
+      }
+
+      Account account = current ? new CurrentAccount(iban, owner) : new SavingsAccount(iban, owner);
+      Currency currency = account.getBalance().currency();
+
+      chunk.nextField();
+      account.setStatus(status(chunk));
+
+      chunk.nextField();
+      if (!chunk.isEmpty()) {
+        if (!(account instanceof CurrentAccount currentAccount)) {
+          throw new IllegalArgumentException("Nur Girokonten haben einen Dispositionsrahmen.");
+        }
+        currentAccount.setLimit(Money.ofMinorUnits(chunk.minorUnits(), currency));
+      }
+
+      chunk.nextField();
+      if (!chunk.isEmpty()) {
+        account.setInterestRate((float) chunk.decimal());
+      }
+
+      chunk.endOfLine();
+      accounts.add(account);
+    }
+
+    return accounts;
+  }
+
+
+  private TransactionRows readTransactions(CsvChunk chunk, Map<String, Account> accounts) {
+    StringCache purposes = new StringCache(CACHE_SIZE);
+    TransactionRows rows = new TransactionRows();
+    TransactionRows.Run run = null;
+
+    while (chunk.nextLine()) {
+      chunk.nextField();
+
+      // Exporte sind meist nach Konto sortiert; dann entfällt die Suche.
+      if (run == null || !chunk.is(run.account().getIban())) {
+        String iban = chunk.text();
+        run = rows.runOf(iban, accounts);
+
+        if (run == null) {
+          throw new IllegalArgumentException("Das Konto " + iban + " ist nicht Teil des Imports.");
+        }
+      }
+
+      chunk.nextField();
+      boolean deposit = chunk.is("+");
+      if (!deposit && !chunk.is("-")) {
+        throw new IllegalArgumentException("Unbekannte Umsatzart: " + chunk.text());
+      }
+
+      chunk.nextField();
+      long amount = chunk.minorUnits();
+      if (amount == 0) {
+        throw new IllegalArgumentException("Der Betrag muss positiv sein.");
+      }
+
+      chunk.nextField();
+      Instant timestamp = chunk.timestamp();
+
+      chunk.nextField();
+      String purpose = chunk.isEmpty() ? null : chunk.text(purposes);
+      chunk.endOfLine();
+
+      rows.add(run, deposit, amount, timestamp, purpose, chunk.getLines());
+    }
+
+    return rows;
+  }
+
+
+  private static AccountStatus status(CsvChunk chunk) {
+    for (AccountStatus status : AccountStatus.values()) {
+      if (chunk.is(status.name())) {
+        return status;
+      }
+    }
+
+    throw new IllegalArgumentException("Unbekannter Kontostatus: " + chunk.text());
+  }
+
+
+  /**
+   * Bucht die Umsätze je Konto in Dateireihenfolge; die Konten sind noch
+   * nicht Teil der Bank und lösen daher keine Ereignisse aus.
+   */
+  private static Postings post(String file, List<Parsed<TransactionRows>> parts) {
+    Map<Account, List<Segment>> byAccount = new HashMap<>();
+
+    for (Parsed<TransactionRows> part : parts) {
+      for (TransactionRows.Run run : part.rows().runs()) {
+        byAccount.computeIfAbsent(run.account(), ignored -> new ArrayList<>())
+            .add(new Segment(part.rows(), run.first(), part.firstLine()));
+      }
+    }
+
+    Postings postings = new Postings(file);
+    byAccount.entrySet().parallelStream().forEach(entry -> postings.post(entry.getKey(), entry.getValue()));
+
+    return postings;
+  }
+
+
+  /**
+   * Liest die Abschnitte einer Datei parallel. Scheitert eine Zeile, nennt
+   * die Ausnahme ihre Nummer in der Datei.
+   */
+  private <R> List<Parsed<R>> parse(Path file, Function<CsvChunk, R> reader) throws IOException, ImportException {
+    List<CsvChunk> parts;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      parts = CsvChunk.split(channel, chunks);
+    }
+
+    List<Object> results = parts.parallelStream()
+        .map(chunk -> {
+          try {
+            return reader.apply(chunk);
+          } catch (RuntimeException e) {
+            return e;
+          }
+        })
+        .toList();
+
+    List<Parsed<R>> parsed = new ArrayList<>(parts.size());
+    int firstLine = 0;
+
+    for (int i = 0; i < parts.size(); i++) {
+      if (results.get(i) instanceof RuntimeException e) {
+        throw new ImportException(file.getFileName() + ", Zeile " + (firstLine + parts.get(i).getLines()) + ": "
+            + e.getMessage(), e);
+      }
+
+      @SuppressWarnings("unchecked")
+      R rows = (R) results.get(i);
+      parsed.add(new Parsed<>(rows, firstLine));
+      firstLine += parts.get(i).getLines();
+    }
+
+    return parsed;
+  }
+
+
+  private static long millisSince(long start) {
+    return (System.nanoTime() - start) / 1_000_000;
+  }
+
+
+  /**
+   * Das Ergebnis eines Abschnitts und die Zahl der Zeilen davor.
+   */
+  private record Parsed<R>(R rows, int firstLine) {
+  }
+
+
+  /**
+   * Die Zeilen eines Kontos in einem Abschnitt, beginnend mit {@code first}.
+   */
+  private record Segment(TransactionRows rows, int first, int firstLine) {
+  }
+
+
+  private static final class Postings {
+
+    private final String file;
+    private final LongAdder posted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final PriorityQueue<Rejection> reported =
+        new PriorityQueue<>(Comparator.comparingInt(Rejection::line).reversed());
+
+
+    private Postings(String file) {
+      this.file = file;
+    }
+
+
+    private void post(Account account, List<Segment> segments) {
+      String iban = account.getIban();
+      Currency currency = account.getBalance().currency();
+
+      for (Segment segment : segments) {
+        TransactionRows rows = segment.rows();
+
+        for (int row = segment.first(); row >= 0; row = rows.next(row)) {
+          Money amount = Money.ofMinorUnits(rows.amount(row), currency);
+          Transaction transaction = rows.isDeposit(row)
+              ? new Deposit(iban, rows.purpose(row), amount, rows.timestamp(row))
+              : new Withdrawal(iban, rows.purpose(row), amount, rows.timestamp(row));
+
+          try {
+            account.makeTransaction(transaction);
+            posted.increment();
+          } catch (InsufficientFundsException | AccountMismatchException | TransactionRejectedException e) {
+            rejected.increment();
+            report(new Rejection(file, segment.firstLine() + rows.line(row), iban, e.getMessage()));
+          }
+        }
+      }
+    }
+
+
+    private synchronized void report(Rejection rejection) {
+      reported.add(rejection);
+
+      if (reported.size() > MAX_REPORTED_REJECTIONS) {
+        reported.poll();
+      }
+    }
+
+
+    private synchronized List<Rejection> reported() {
+      List<Rejection> sorted = new ArrayList<>(reported);
+      sorted.sort(Comparator.comparingInt(Rejection::line));
+      return sorted;
+    }
+
+  }
+
+}
@@ -0,0 +1,416 @@
+package de.raywo.banking.system.importer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Ein Abschnitt einer speicherabgebildeten CSV-Datei mit {@code ;} als
+ * Trennzeichen. Zum Abschnitt gehören alle Zeilen, die in ihm beginnen; die
+ * letzte darf über sein Ende hinausreichen. Die erste Zeile der Datei ist die
+ * Kopfzeile und wird übersprungen.
+ * <p>
+ * Felder werden direkt aus den Bytes gelesen. Zahlen, Beträge, Zeitpunkte
+ * und UUIDs entstehen ohne Zwischen-{@code String}; Texte, die sich
+ * wiederholen, liefert ein {@link StringCache}. Ein fehlerhaftes Feld führt zu
+ * einer {@link IllegalArgumentException}; {@link #getLines()} nennt dann die
+ * Zeile innerhalb des Abschnitts.
+ */
+final class CsvChunk {
+
+  static final int MAX_LINE_LENGTH = 64 * 1024;
+  private static final long MIN_CHUNK_SIZE = 1 << 20;
+  private static final long MAX_CHUNK_SIZE = 1 << 30;
+  private static final byte SEPARATOR = ';';
+  private static final byte QUOTE = '"';
+
+  private final ByteBuffer buffer;
+  private final int end;
+  private final boolean lastInFile;
+  private int position;
+  private int lines;
+  private int lineEnd;
+  private int cursor;
+  private int fieldStart;
+  private int fieldEnd;
+  private boolean escaped;
+  private byte[] scratch = new byte[256];
+
+
+  private CsvChunk(ByteBuffer buffer, int start, int end, boolean lastInFile) {
+    this.buffer = buffer;
+    this.end = end;
+    this.lastInFile = lastInFile;
+    this.position = start;
+
+    if (start == 0) {
+      // Kopfzeile der Datei
+      skipLine();
+    } else if (buffer.get(start - 1) != '\n') {
+      // Die erste Zeile gehört zum vorigen Abschnitt.
+      int newline = indexOfNewline(start);
+      position = newline < 0 ? end : newline + 1;
+    }
+  }
+
+
+  /**
+   * Teilt die Datei in etwa {@code count} Abschnitte auf.
+   */
+  static List<CsvChunk> split(FileChannel channel, int count) throws IOException {
+    long size = channel.size();
+    long chunkSize = Math.min(MAX_CHUNK_SIZE, Math.max(MIN_CHUNK_SIZE, (size + count - 1) / count));
+    List<CsvChunk> chunks = new ArrayList<>();
+
+    for (long start = 0; start < size; start += chunkSize) {
+      long end = Math.min(size, start + chunkSize);
+      long mapStart = Math.max(0, start - 1);
+      long mapEnd = Math.min(size, end + MAX_LINE_LENGTH);
+      ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, mapStart, mapEnd - mapStart);
+
+      chunks.add(new CsvChunk(buffer, (int) (start - mapStart), (int) (end - mapStart), mapEnd == size));
+    }
+
+    return chunks;
+  }
+
+
+  /**
+   * Die Zahl der bisher gelesenen Zeilen einschließlich Kopf- und Leerzeilen.
+   */
+  int getLines() {
+    return lines;
+  }
+
+
+  /**
+   * Geht zur nächsten nicht leeren Zeile des Abschnitts.
+   */
+  boolean nextLine() {
+    while (position < end) {
+      int start = position;
+      skipLine();
+
+      if (lineEnd > start) {
+        cursor = start;
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+
+  /**
+   * Geht zum nächsten Feld der aktuellen Zeile.
+   */
+  void nextField() {
+    if (cursor > lineEnd) {
+      throw new IllegalArgumentException("Die Zeile enthält zu wenige Felder.");
+    }
+
+    escaped = false;
+
+    if (cursor < lineEnd && buffer.get(cursor) == QUOTE) {
+      int index = cursor + 1;
+      fieldStart = index;
+
+      while (true) {
+        if (index >= lineEnd) {
+          throw new IllegalArgumentException("Ein Anführungszeichen wird nicht geschlossen.");
+        }
+        if (buffer.get(index) == QUOTE) {
+          if (index + 1 < lineEnd && buffer.get(index + 1) == QUOTE) {
+            escaped = true;
+            index += 2;
+            continue;
+          }
+          break;
+        }
+        index++;
+      }
+
+      fieldEnd = index;
+      cursor = index + 1;
+
+      if (cursor < lineEnd && buffer.get(cursor) != SEPARATOR) {
+        throw new IllegalArgumentException("Nach einem Anführungszeichen muss das Feld enden.");
+      }
+    } else {
+      int index = cursor;
+      while (index < lineEnd && buffer.get(index) != SEPARATOR) {
+        index++;
+      }
+
+      fieldStart = cursor;
+      fieldEnd = index;
+      cursor = index;
+    }
+
+    cursor++;
+  }
+
+
+  /**
+   * Stellt sicher, dass die aktuelle Zeile keine weiteren Felder enthält.
+   */
+  void endOfLine() {
+    if (cursor <= lineEnd) {
+      throw new IllegalArgumentException("Die Zeile enthält zu viele Felder.");
+    }
+  }
+
+
+  boolean isEmpty() {
+    return fieldStart == fieldEnd;
+  }
+
+
+  boolean is(String ascii) {
+    if (fieldEnd - fieldStart != ascii.length()) {
+      return false;
+    }
+
+    for (int i = 0; i < ascii.length(); i++) {
+      if (buffer.get(fieldStart + i) != ascii.charAt(i)) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+
+  /**
+   * Liest einen nicht negativen Betrag wie {@code 1234.5} oder
+   * {@code 1234,56} in Cent.
+   */
+  long minorUnits() {
+    long value = 0;
+    int decimals = -1;
+    int digits = 0;
+
+    for (int i = fieldStart; i < fieldEnd; i++) {
+      byte b = buffer.get(i);
+
+      if ((b == '.' || b == ',') && decimals < 0) {
+        decimals = 0;
+      } else if (b >= '0' && b <= '9' && decimals < 2 && digits < 17) {
+        value = value * 10 + (b - '0');
+        digits++;
+        if (decimals >= 0) {
+          decimals++;
+        }
+      } else {
+        throw new IllegalArgumentException("Ungültiger Betrag: " + text());
+      }
+    }
+
+    if (digits == 0) {
+      throw new IllegalArgumentException("Ungültiger Betrag: " + text());
+    }
+
+    for (int i = Math.max(0, decimals); i < 2; i++) {
+      value *= 10;
+    }
+
+    return value;
+  }
+
+
+  /**
+   * Liest eine nicht negative Dezimalzahl wie {@code 0.015}.
+   */
+  double decimal() {
+    long value = 0;
+    long scale = 1;
+    boolean fraction = false;
+    int digits = 0;
+
+    for (int i = fieldStart; i < fieldEnd; i++) {
+      byte b = buffer.get(i);
+
+      if ((b == '.' || b == ',') && !fraction) {
+        fraction = true;
+      } else if (b >= '0' && b <= '9' && digits < 17) {
+        value = value * 10 + (b - '0');
+        digits++;
+        if (fraction) {
+          scale *= 10;
+        }
+      } else {
+        throw new IllegalArgumentException("Ungültige Zahl: " + text());
+      }
+    }
+
+    if (digits == 0) {
+      throw new IllegalArgumentException("Ungültige Zahl: " + text());
+    }
+
+    return (double) value / scale;
+  }
+
+
+  /**
+   * Liest einen Zeitpunkt in UTC wie {@code 2024-01-31T12:00:00Z}, optional
+   * mit Sekundenbruchteilen.
+   */
+  Instant timestamp() {
+    int length = fieldEnd - fieldStart;
+    if (length < 20 || byteAt(4) != '-' || byteAt(7) != '-' || byteAt(10) != 'T'
+        || byteAt(13) != ':' || byteAt(16) != ':' || byteAt(length - 1) != 'Z') {
+      throw new IllegalArgumentException("Ungültiger Zeitpunkt: " + text());
+    }
+
+    int year = digits(0, 4);
+    int month = digits(5, 2);
+    int day = digits(8, 2);
+    int hour = digits(11, 2);
+    int minute = digits(14, 2);
+    int second = digits(17, 2);
+    int nanos = 0;
+
+    if (length > 20) {
+      int fractionDigits = length - 21;
+      if (byteAt(19) != '.' || fractionDigits < 1 || fractionDigits > 9) {
+        throw new IllegalArgumentException("Ungültiger Zeitpunkt: " + text());
+      }
+
+      nanos = digits(20, fractionDigits);
+      for (int i = fractionDigits; i < 9; i++) {
+        nanos *= 10;
+      }
+    }
+
+    if (hour > 23 || minute > 59 || second > 59) {
+      throw new IllegalArgumentException("Ungültiger Zeitpunkt: " + text());
+    }
+
+    long epochDay = LocalDate.of(year, month, day).toEpochDay();
+    return Instant.ofEpochSecond(epochDay * 86_400 + hour * 3_600L + minute * 60L + second, nanos);
+  }
+
+
+  UUID uuid() {
+    if (fieldEnd - fieldStart != 36 || byteAt(8) != '-' || byteAt(13) != '-'
+        || byteAt(18) != '-' || byteAt(23) != '-') {
+      throw new IllegalArgumentException("Ungültige UUID: " + text());
+    }
+
+    long high = hex(0, 8) << 32 | hex(9, 4) << 16 | hex(14, 4);
+    long low = hex(19, 4) << 48 | hex(24, 12);
+
+    return new UUID(high, low);
+  }
+
+
+  /**
+   * Liefert das Feld als Text; wiederholte Werte kommen aus {@code cache}.
+   */
+  String text(StringCache cache) {
+    if (escaped) {
+      return text();
+    }
+
+    return cache.get(buffer, fieldStart, fieldEnd - fieldStart);
+  }
+
+
+  String text() {
+    int length = fieldEnd - fieldStart;
+
+    if (scratch.length < length) {
+      scratch = new byte[length];
+    }
+
+    if (!escaped) {
+      buffer.get(fieldStart, scratch, 0, length);
+      return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    length = 0;
+    for (int i = fieldStart; i < fieldEnd; i++) {
+      byte b = buffer.get(i);
+      scratch[length++] = b;
+
+      if (b == QUOTE) {
+        i++;
+      }
+    }
+
+    return new String(scratch, 0, length, StandardCharsets.UTF_8);
+  }
+
+
+  private void skipLine() {
+    int newline = indexOfNewline(position);
+
+    if (newline < 0) {
+      if (!lastInFile) {
+        throw new IllegalArgumentException("Eine Zeile ist länger als " + MAX_LINE_LENGTH + " Bytes.");
+      }
+      newline = buffer.limit();
+    }
+
+    lineEnd = newline;
+    if (lineEnd > position && buffer.get(lineEnd - 1) == '\r') {
+      lineEnd--;
+    }
+
+    position = newline + 1;
+    lines++;
+  }
+
+
+  private int indexOfNewline(int from) {
+    for (int i = from; i < buffer.limit(); i++) {
+      if (buffer.get(i) == '\n') {
+        return i;
+      }
+    }
+
+    return -1;
+  }
+
+
+  private byte byteAt(int offset) {
+    return buffer.get(fieldStart + offset);
+  }
+
+
+  private int digits(int offset, int count) {
+    int value = 0;
+
+    for (int i = 0; i < count; i++) {
+      byte b = byteAt(offset + i);
+      if (b < '0' || b > '9') {
+        throw new IllegalArgumentException("Ungültige Ziffer in " + text());
+      }
+      value = value * 10 + (b - '0');
+    }
+
+    return value;
+  }
+
+
+  private long hex(int offset, int count) {
+    long value = 0;
+
+    for (int i = 0; i < count; i++) {
+      int digit = Character.digit(byteAt(offset + i), 16);
+      if (digit < 0) {
+        throw new IllegalArgumentException("Ungültige UUID: " + text());
+      }
+      value = value << 4 | digit;
+    }
+
+    return value;
+  }
+
+}
@@ -0,0 +1,12 @@
+package de.raywo.banking.system.importer;
+
+public class ImportException extends Exception {
+  public ImportException(String message, Throwable cause) {
+    super(message, cause);
+  }
+
+
+  public ImportException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,36 @@
+package de.raywo.banking.system.importer;
+
+import java.util.List;
+
+/**
+ * Das Ergebnis eines Massenimports. {@code rejections} enthält höchstens die
+ * ersten {@link BulkImporter#MAX_REPORTED_REJECTIONS} abgelehnten Umsätze
+ * nach Zeilen sortiert; {@code rejectedTransactions} zählt alle.
+ */
+public record ImportResult(
+    int customers,
+    int accounts,
+    long postedTransactions,
+    long rejectedTransactions,
+    List<Rejection> rejections,
+    long parseMillis,
+    long postMillis,
+    long persistMillis
+) {
+
+  public ImportResult {
+    rejections = List.copyOf(rejections);
+  }
+
+
+  public long rows() {
+    return customers + accounts + postedTransactions + rejectedTransactions;
+  }
+
+
+  public double rowsPerSecond() {
+    long millis = parseMillis + postMillis + persistMillis;
+    return millis == 0 ? 0 : rows() * 1000.0 / millis;
+  }
+
+}
@@ -0,0 +1,13 @@
+package de.raywo.banking.system.importer;
+
+/**
+ * Ein Umsatz, den das Konto beim Import abgelehnt hat.
+ */
+public record Rejection(String file, int line, String iban, String reason) {
+
+  @Override
+  public String toString() {
+    return file + ", Zeile " + line + " (" + iban + "): " + reason;
+  }
+
+}
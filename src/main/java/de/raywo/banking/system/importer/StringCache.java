@@ -0,0 +1,65 @@
+package de.raywo.banking.system.importer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Ein direkt abgebildeter Zwischenspeicher von Texten, die aus Bytes
+ * entstehen. Wiederkehrende Werte wie IBANs oder Verwendungszwecke werden so
+ * nur einmal je Abschnitt als {@code String} angelegt. Bei einer Kollision
+ * verdrängt der neue Wert den alten.
+ */
+final class StringCache {
+
+  private final byte[][] keys;
+  private final String[] values;
+  private final int mask;
+
+
+  StringCache(int capacity) {
+    int size = Integer.highestOneBit(Math.max(16, capacity - 1)) << 1;
+    this.keys = new byte[size][];
+    this.values = new String[size];
+    this.mask = size - 1;
+  }
+
+
+  String get(ByteBuffer buffer, int offset, int length) {
+    int hash = 1;
+    for (int i = 0; i < length; i++) {
+      hash = 31 * hash + buffer.get(offset + i);
+    }
+
+    int slot = (hash ^ hash >>> 16) & mask;
+    byte[] key = keys[slot];
+
+    if (key != null && matches(key, buffer, offset, length)) {
+      return values[slot];
+    }
+
+    key = new byte[length];
+    buffer.get(offset, key, 0, length);
+
+    String value = new String(key, StandardCharsets.UTF_8);
+    keys[slot] = key;
+    values[slot] = value;
+
+    return value;
+  }
+
+
+  private static boolean matches(byte[] key, ByteBuffer buffer, int offset, int length) {
+    if (key.length != length) {
+      return false;
+    }
+
+    for (int i = 0; i < length; i++) {
+      if (key[i] != buffer.get(offset + i)) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+}
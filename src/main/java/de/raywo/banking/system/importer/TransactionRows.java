@@ -0,0 +1,135 @@
+package de.raywo.banking.system.importer;
+
+import de.raywo.banking.domain.Account;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Die Umsätze eines Abschnitts in Spalten. Die Zeilen eines Kontos bilden
+ * einen {@link Run} und sind in Dateireihenfolge über {@link #next(int)}
+ * verkettet.
+ */
+final class TransactionRows {
+
+  private final Map<String, Run> runs = new HashMap<>();
+  private boolean[] deposits = new boolean[1024];
+  private long[] amounts = new long[1024];
+  private Instant[] timestamps = new Instant[1024];
+  private String[] purposes = new String[1024];
+  private int[] lines = new int[1024];
+  private int[] next = new int[1024];
+  private int size;
+
+
+  /**
+   * Liefert die Zeilen des Kontos mit der IBAN {@code iban} in diesem
+   * Abschnitt oder {@code null}, wenn das Konto nicht Teil des Imports ist.
+   */
+  Run runOf(String iban, Map<String, Account> accounts) {
+    Run run = runs.get(iban);
+
+    if (run == null) {
+      Account account = accounts.get(iban);
+      if (account == null) {
+        return null;
+      }
+
+      run = new Run(account);
+      runs.put(iban, run);
+    }
+
+    return run;
+  }
+
+
+  Collection<Run> runs() {
+    return runs.values();
+  }
+
+
+  void add(Run run, boolean deposit, long amount, Instant timestamp, String purpose, int line) {
+    if (size == next.length) {
+      int capacity = size + (size >> 1);
+      deposits = Arrays.copyOf(deposits, capacity);
+      amounts = Arrays.copyOf(amounts, capacity);
+      timestamps = Arrays.copyOf(timestamps, capacity);
+      purposes = Arrays.copyOf(purposes, capacity);
+      lines = Arrays.copyOf(lines, capacity);
+      next = Arrays.copyOf(next, capacity);
+    }
+
+    int row = size++;
+    deposits[row] = deposit;
+    amounts[row] = amount;
+    timestamps[row] = timestamp;
+    purposes[row] = purpose;
+    lines[row] = line;
+    next[row] = -1;
+
+    if (run.first < 0) {
+      run.first = row;
+    } else {
+      next[run.last] = row;
+    }
+    run.last = row;
+  }
+
+
+  int next(int row) {
+    return next[row];
+  }
+
+
+  boolean isDeposit(int row) {
+    return deposits[row];
+  }
+
+
+  long amount(int row) {
+    return amounts[row];
+  }
+
+
+  Instant timestamp(int row) {
+    return timestamps[row];
+  }
+
+
+  String purpose(int row) {
+    return purposes[row];
+  }
+
+
+  int line(int row) {
+    return lines[row];
+  }
+
+
+  static final class Run {
+
+    private final Account account;
+    private int first = -1;
+    private int last = -1;
+
+
+    private Run(Account account) {
+      this.account = account;
+    }
+
+
+    Account account() {
+      return account;
+    }
+
+
+    int first() {
+      return first;
+    }
+
+  }
+
+}
@@ -0,0 +1,11 @@
+package de.raywo.banking.system.integrity;
+
+import de.raywo.banking.domain.Money;
+
+public record Discrepancy(String iban, Money storedBalance, Money recomputedBalance, boolean historyDigestMatches) {
+
+  public boolean balanceMatches() {
+    return storedBalance.equals(recomputedBalance);
+  }
+
+}
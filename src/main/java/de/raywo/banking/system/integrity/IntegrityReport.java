@@ -0,0 +1,16 @@
+package de.raywo.banking.system.integrity;
+
+import java.util.List;
+
+public record IntegrityReport(int checkedAccounts, List<Discrepancy> discrepancies) {
+
+  public IntegrityReport {
+    discrepancies = List.copyOf(discrepancies);
+  }
+
+
+  public boolean isConsistent() {
+    return discrepancies.isEmpty();
+  }
+
+}
@@ -0,0 +1,105 @@
+package de.raywo.banking.system.integrity;
+
+import de.raywo.banking.domain.Account;
+import de.raywo.banking.domain.HistoryDigest;
+import de.raywo.banking.domain.Money;
+import de.raywo.banking.domain.TransactionLog;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Prüft für alle Konten, ob der gespeicherte Saldo der Summe der Umsätze
+ * entspricht und ob die Hashkette zum Verlauf passt. Die Konten werden
+ * rekursiv halbiert und auf einem Fork-Join-Pool parallel geprüft.
+ */
+public class IntegrityVerifier {
+
+  private static final int THRESHOLD = 64;
+
+  private final ForkJoinPool pool;
+
+
+  public IntegrityVerifier() {
+    this(ForkJoinPool.commonPool());
+  }
+
+
+  public IntegrityVerifier(ForkJoinPool pool) {
+    this.pool = Objects.requireNonNull(pool);
+  }
+
+
+  public IntegrityReport verify(Collection<? extends Account> accounts) {
+    Account[] all = accounts.toArray(new Account[0]);
+    List<Discrepancy> discrepancies = pool.invoke(new VerifyTask(all, 0, all.length));
+
+    return new IntegrityReport(all.length, discrepancies);
+  }
+
+
+  public static Optional<Discrepancy> check(Account account) {
+    synchronized (account) {
+      TransactionLog log = account.getTransactionLog();
+      Money stored = account.getBalance();
+      long balance = 0;
+
+      for (int i = 0; i < log.size(); i++) {
+        long amount = log.getAmountMinorUnits(i);
+        balance = log.isDeposit(i) ? Math.addExact(balance, amount) : Math.subtractExact(balance, amount);
+      }
+
+      Money recomputed = Money.ofMinorUnits(balance, stored.currency());
+      boolean historyMatches = Arrays.equals(
+          HistoryDigest.of(account.getIban(), log),
+          account.getHistoryDigest()
+      );
+
+      if (recomputed.equals(stored) && historyMatches) {
+        return Optional.empty();
+      }
+
+      return Optional.of(new Discrepancy(account.getIban(), stored, recomputed, historyMatches));
+    }
+  }
+
+
+  private static final class VerifyTask extends RecursiveTask<List<Discrepancy>> {
+
+    private final Account[] accounts;
+    private final int from;
+    private final int to;
+
+
+    VerifyTask(Account[] accounts, int from, int to) {
+      this.accounts = accounts;
+      this.from = from;
+      this.to = to;
+    }
+
+
+    @Override
+    protected List<Discrepancy> compute() {
+      if (to - from <= THRESHOLD) {
+        List<Discrepancy> found = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+          check(accounts[i]).ifPresent(found::add);
+        }
+
+        return found;
+      }
+
+      int middle = (from + to) >>> 1;
+      VerifyTask left = new VerifyTask(accounts, from, middle);
+      left.fork();
+
+      List<Discrepancy> found = new ArrayList<>(new VerifyTask(accounts, middle, to).compute());
+      found.addAll(0, left.join());
+
+      return found;
+    }
+
+  }
+
+}
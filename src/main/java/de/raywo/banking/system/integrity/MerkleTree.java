@@ -0,0 +1,275 @@
+package de.raywo.banking.system.integrity;
+
+import de.raywo.banking.domain.Account;
+import de.raywo.banking.domain.HistoryDigest;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Ein Hashbaum über den Zuständen aller Konten.
+ * <p>
+ * Jedes Konto liefert ein Blatt aus IBAN, Saldo und dem letzten Glied seiner
+ * Hashkette. Die Blätter sind anhand der IBAN auf eine feste Zahl von Fächern
+ * verteilt; der Digest eines Fachs ist das XOR seiner Blätter und lässt sich
+ * bei jeder Buchung in konstanter Zeit nachführen. Darüber liegt ein binärer
+ * Baum, dessen innere Knoten erst beim nächsten Lesen neu berechnet werden.
+ * <p>
+ * Schreibende sperren nur ihr Fach und markieren die darüberliegenden Knoten
+ * ohne Sperre als veraltet; Buchungen auf verschiedenen Konten behindern sich
+ * so kaum. Lesende berechnen die veralteten Knoten unter der Sperre des
+ * Baums. Ein Knoten wird vor dem Lesen seiner Kinder als aktuell markiert,
+ * damit eine gleichzeitige Änderung ihn erneut als veraltet hinterlässt.
+ * Zwei Bäume mit gleicher Fachzahl lassen sich vergleichen, indem man nur in
+ * Teilbäume mit abweichendem Digest absteigt.
+ */
+public class MerkleTree {
+
+  public static final int DEFAULT_BUCKETS = 1024;
+
+  private final int buckets;
+  private final byte[][] nodes;
+  private final AtomicIntegerArray dirty;
+  private final List<Map<String, byte[]>> leaves;
+
+
+  public MerkleTree(int buckets) {
+    if (buckets < 2 || Integer.bitCount(buckets) != 1) {
+      throw new IllegalArgumentException("Die Zahl der Fächer muss eine Zweierpotenz sein: " + buckets);
+    }
+
+    this.buckets = buckets;
+    this.nodes = new byte[2 * buckets][];
+    this.dirty = new AtomicIntegerArray(buckets);
+    this.leaves = new ArrayList<>(buckets);
+
+    for (int i = 0; i < buckets; i++) {
+      nodes[buckets + i] = new byte[HistoryDigest.LENGTH];
+      leaves.add(new HashMap<>());
+    }
+
+    for (int node = 1; node < buckets; node++) {
+      dirty.set(node, 1);
+    }
+  }
+
+
+  public static MerkleTree of(Collection<? extends Account> accounts) {
+    return of(accounts, DEFAULT_BUCKETS);
+  }
+
+
+  public static MerkleTree of(Collection<? extends Account> accounts, int buckets) {
+    MerkleTree tree = new MerkleTree(buckets);
+
+    accounts.parallelStream()
+        .map(account -> Map.entry(account.getIban(), leafOf(account)))
+        .toList()
+        .forEach(leaf -> tree.put(leaf.getKey(), leaf.getValue()));
+
+    return tree;
+  }
+
+
+  /**
+   * Berechnet das Blatt eines Kontos; Saldo und Hashkette werden unter der
+   * Sperre des Kontos gemeinsam gelesen.
+   */
+  public static byte[] leafOf(Account account) {
+    byte[] history;
+    long balance;
+    String currency;
+
+    synchronized (account) {
+      history = account.getHistoryDigest();
+      balance = account.getBalance().minorUnits();
+      currency = account.getBalance().currency().getCurrencyCode();
+    }
+
+    MessageDigest digest = HistoryDigest.sha256();
+    digest.update(account.getIban().getBytes(StandardCharsets.UTF_8));
+    digest.update(currency.getBytes(StandardCharsets.UTF_8));
+    digest.update(ByteBuffer.allocate(Long.BYTES).putLong(balance).array());
+    digest.update(history);
+
+    return digest.digest();
+  }
+
+
+  public int getBucketCount() {
+    return buckets;
+  }
+
+
+  public void update(Account account) {
+    put(account.getIban(), leafOf(account));
+  }
+
+
+  public void put(String iban, byte[] leaf) {
+    int bucket = bucketOf(iban);
+    Map<String, byte[]> bucketLeaves = leaves.get(bucket);
+
+    synchronized (bucketLeaves) {
+      byte[] previous = bucketLeaves.put(iban, leaf);
+
+      if (previous != null) {
+        xorInto(nodes[buckets + bucket], previous);
+      }
+      xorInto(nodes[buckets + bucket], leaf);
+    }
+
+    invalidate(buckets + bucket);
+  }
+
+
+  public void remove(String iban) {
+    int bucket = bucketOf(iban);
+    Map<String, byte[]> bucketLeaves = leaves.get(bucket);
+    byte[] previous;
+
+    synchronized (bucketLeaves) {
+      previous = bucketLeaves.remove(iban);
+
+      if (previous != null) {
+        xorInto(nodes[buckets + bucket], previous);
+      }
+    }
+
+    if (previous != null) {
+      invalidate(buckets + bucket);
+    }
+  }
+
+
+  public byte[] rootDigest() {
+    return nodeDigest(1);
+  }
+
+
+  /**
+   * Liefert den Digest eines Knotens in Heap-Anordnung: die Wurzel hat den
+   * Index 1, die Kinder von {@code n} sind {@code 2n} und {@code 2n + 1}, die
+   * Fächer liegen auf den Indizes {@code buckets} bis {@code 2 * buckets - 1}.
+   */
+  public synchronized byte[] nodeDigest(int node) {
+    Objects.checkIndex(node - 1, nodes.length - 1);
+    byte[] digest = digestOf(node);
+
+    return node >= buckets ? digest : digest.clone();
+  }
+
+
+  /**
+   * Liefert die IBANs, deren Blätter sich zwischen beiden Bäumen
+   * unterscheiden oder nur in einem der Bäume vorkommen.
+   */
+  public SortedSet<String> diff(MerkleTree other) {
+    if (other.buckets != buckets) {
+      throw new IllegalArgumentException("Die Bäume haben unterschiedlich viele Fächer.");
+    }
+
+    SortedSet<String> differences = new TreeSet<>();
+    Deque<Integer> pending = new ArrayDeque<>();
+    pending.push(1);
+
+    while (!pending.isEmpty()) {
+      int node = pending.pop();
+
+      if (Arrays.equals(nodeDigest(node), other.nodeDigest(node))) {
+        continue;
+      }
+
+      if (node >= buckets) {
+        diffBucket(node - buckets, other, differences);
+      } else {
+        pending.push(2 * node + 1);
+        pending.push(2 * node);
+      }
+    }
+
+    return differences;
+  }
+
+
+  private void diffBucket(int bucket, MerkleTree other, Set<String> differences) {
+    Map<String, byte[]> mine = leavesOf(bucket);
+    Map<String, byte[]> theirs = other.leavesOf(bucket);
+
+    mine.forEach((iban, leaf) -> {
+      if (!Arrays.equals(leaf, theirs.get(iban))) {
+        differences.add(iban);
+      }
+    });
+
+    theirs.keySet().stream()
+        .filter(iban -> !mine.containsKey(iban))
+        .forEach(differences::add);
+  }
+
+
+  private Map<String, byte[]> leavesOf(int bucket) {
+    Map<String, byte[]> bucketLeaves = leaves.get(bucket);
+
+    synchronized (bucketLeaves) {
+      return new HashMap<>(bucketLeaves);
+    }
+  }
+
+
+  /**
+   * Liefert den Digest eines Knotens; für ein Fach eine Kopie, die unter der
+   * Sperre des Fachs gezogen wird.
+   */
+  private byte[] digestOf(int node) {
+    if (node >= buckets) {
+      Map<String, byte[]> bucketLeaves = leaves.get(node - buckets);
+
+      synchronized (bucketLeaves) {
+        return nodes[node].clone();
+      }
+    }
+
+    if (dirty.get(node) != 0) {
+      dirty.set(node, 0);
+
+      MessageDigest digest = HistoryDigest.sha256();
+      digest.update(digestOf(2 * node));
+      digest.update(digestOf(2 * node + 1));
+      nodes[node] = digest.digest();
+    }
+
+    return nodes[node];
+  }
+
+
+  /**
+   * Markiert alle Vorfahren eines Fachs als veraltet. Es wird nicht beim
+   * ersten bereits markierten Vorfahren abgebrochen, weil ein Lesender die
+   * Markierungen von oben nach unten zurücksetzt.
+   */
+  private void invalidate(int node) {
+    for (int parent = node >>> 1; parent >= 1; parent >>>= 1) {
+      if (dirty.get(parent) == 0) {
+        dirty.set(parent, 1);
+      }
+    }
+  }
+
+
+  private int bucketOf(String iban) {
+    int h = iban.hashCode() * 0x9E3779B9;
+    return (h ^ (h >>> 16)) & (buckets - 1);
+  }
+
+
+  private static void xorInto(byte[] target, byte[] source) {
+    for (int i = 0; i < target.length; i++) {
+      target[i] ^= source[i];
+    }
+  }
+
+}
@@ -0,0 +1,15 @@
+package de.raywo.banking.system.replication;
+
+import de.raywo.banking.domain.AccountState;
+import de.raywo.banking.domain.AuthorizationHold;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Vormerkungen und Einstellungen eines Kontos, wie sie ein Standby
+ * übernimmt. Der Saldo im Stand wird dort nicht verwendet; er folgt den
+ * replizierten Buchungen.
+ */
+record AccountUpdate(String iban, AccountState state, List<AuthorizationHold> holds) implements Serializable {
+}
@@ -0,0 +1,182 @@
+package de.raywo.banking.system.replication;
+
+import de.raywo.banking.domain.Account;
+import de.raywo.banking.domain.Customer;
+import de.raywo.banking.domain.StandingOrder;
+import de.raywo.banking.persistence.Repository;
+import de.raywo.banking.system.events.TransactionEventStream;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Nimmt auf einem lokalen Port Standby-Verbindungen an. Jeder Standby erhält
+ * zuerst den aktuellen Bestand an Kunden, Konten und Daueraufträgen und
+ * danach fortlaufend alle gebuchten Transaktionen, neu angelegte Kunden und
+ * Konten, jede Änderung an Vormerkungen und Einstellungen eines Kontos sowie
+ * jeden neuen, ausgeführten oder gelöschten Dauerauftrag.
+ * <p>
+ * Nur ein Standby, der dasselbe Geheimnis kennt, wird angemeldet; jede
+ * andere Verbindung wird nach dem gescheiterten Nachweis getrennt.
+ */
+public class ReplicationPrimary implements AutoCloseable {
+
+  private final ServerSocket serverSocket;
+  private final byte[] secret;
+  private final Repository<String, Account> accounts;
+  private final Repository<UUID, Customer> customers;
+  private final Repository<UUID, StandingOrder> standingOrders;
+  private final TransactionEventStream events;
+  private final List<StandbyConnection> standbys = new CopyOnWriteArrayList<>();
+  private final Thread acceptor;
+
+
+  public ReplicationPrimary(int port, byte[] secret, Repository<String, Account> accounts,
+                            Repository<UUID, Customer> customers, Repository<UUID, StandingOrder> standingOrders,
+                            TransactionEventStream events) throws IOException {
+    this.secret = ReplicationProtocol.requireSecret(secret);
+    this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+    this.accounts = accounts;
+    this.customers = customers;
+    this.standingOrders = standingOrders;
+    this.events = events;
+    this.acceptor = new Thread(this::accept, "replication-accept");
+    this.acceptor.setDaemon(true);
+    this.acceptor.start();
+  }
+
+
+  public int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+
+  public List<StandbyConnection> getStandbys() {
+    standbys.removeIf(standby -> !standby.isOpen());
+    return List.copyOf(standbys);
+  }
+
+
+  /**
+   * Sendet ein neues Konto an alle Standbys und führt danach {@code adopt}
+   * aus, das es buchbar macht. Beides geschieht unter derselben Sperre wie
+   * die Anmeldung eines Standbys: Ein bereits angemeldeter Standby erhält das
+   * Konto vor jeder Buchung darauf, ein später angemeldeter findet es im
+   * Bestand.
+   */
+  public synchronized void accountAdded(Account account, Runnable adopt) {
+    broadcast(ReplicationProtocol.ACCOUNT, account);
+    adopt.run();
+  }
+
+
+  public void customerAdded(Customer customer) {
+    broadcast(ReplicationProtocol.CUSTOMER, customer);
+  }
+
+
+  /**
+   * Sendet Vormerkungen und Einstellungen eines Kontos. Der Stand wird erst
+   * unter der Sperre des Primärsystems gelesen, so dass die Standbys die
+   * Stände eines Kontos in der Reihenfolge erhalten, in der sie entstanden
+   * sind, und der zuletzt gesendete immer der aktuelle ist.
+   */
+  public synchronized void accountChanged(Account account) {
+    if (standbys.isEmpty()) {
+      return;
+    }
+
+    AccountUpdate update;
+    synchronized (account) {
+      update = new AccountUpdate(account.getIban(), account.getState(), List.copyOf(account.getHolds()));
+    }
+
+    broadcast(ReplicationProtocol.ACCOUNT_UPDATE, update);
+  }
+
+
+  /**
+   * Sendet einen neuen, ausgeführten oder gelöschten Dauerauftrag. Der
+   * Aufrufer hält die Sperre, unter der der Auftrag verändert wird.
+   */
+  public void standingOrderChanged(StandingOrder order) {
+    broadcast(ReplicationProtocol.STANDING_ORDER, order);
+  }
+
+
+  @Override
+  public void close() {
+    try {
+      serverSocket.close();
+      acceptor.join();
+    } catch (IOException e) {
+      // Der Port wird ohnehin freigegeben.
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    standbys.forEach(StandbyConnection::close);
+    standbys.clear();
+  }
+
+
+  private synchronized void broadcast(byte type, Serializable entity) {
+    if (standbys.isEmpty()) {
+      return;
+    }
+
+    try {
+      byte[] frame = ReplicationProtocol.object(type, entity);
+      standbys.forEach(standby -> standby.enqueue(frame));
+    } catch (IOException e) {
+      System.err.println("Replikation von " + entity + " fehlgeschlagen: " + e.getMessage());
+    }
+  }
+
+
+  private void accept() {
+    while (!serverSocket.isClosed()) {
+      try {
+        Socket socket = serverSocket.accept();
+        socket.setTcpNoDelay(true);
+
+        try {
+          ReplicationProtocol.authenticateStandby(socket, secret);
+        } catch (IOException e) {
+          socket.close();
+          throw e;
+        }
+
+        register(new StandbyConnection(socket, events));
+      } catch (IOException e) {
+        if (!serverSocket.isClosed()) {
+          System.err.println("Standby-Verbindung fehlgeschlagen: " + e.getMessage());
+        }
+      }
+    }
+  }
+
+
+  /**
+   * Meldet den Standby an, bevor der Bestand eingestellt wird, damit er keine
+   * währenddessen angelegten Kunden oder Konten verpasst.
+   */
+  private synchronized void register(StandbyConnection standby) throws IOException {
+    standbys.add(standby);
+
+    try {
+      standby.start(customers.findAll(), accounts.findAll(), standingOrders.findAll());
+    } catch (IOException e) {
+      standby.close();
+      standbys.remove(standby);
+      throw e;
+    }
+  }
+
+}
@@ -0,0 +1,269 @@
+package de.raywo.banking.system.replication;
+
+import de.raywo.banking.system.events.TransactionEvent;
+import de.raywo.banking.system.events.TransactionEventCodec;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.*;
+import java.net.Socket;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * Rahmenformat zwischen Primärsystem und Standby. Jeder Rahmen besteht aus
+ * seiner Länge und einem Typ-Byte, gefolgt vom Inhalt.
+ * <p>
+ * Vor dem ersten Datenrahmen weisen sich beide Seiten gegenseitig nach, dass
+ * sie dasselbe Geheimnis kennen: Der Standby sendet eine Zufallszahl, das
+ * Primärsystem antwortet mit einer eigenen und einem HMAC über beide, der
+ * Standby bestätigt mit einem HMAC in der anderen Rolle. Das Geheimnis
+ * selbst geht nie über die Leitung.
+ * <p>
+ * Serialisierte Objekte werden nur gelesen, wenn ihre Klassen zum Protokoll
+ * gehören; alles andere weist der {@link ObjectInputFilter} ab.
+ */
+final class ReplicationProtocol {
+
+  static final int MIN_SECRET_LENGTH = 16;
+  static final int HANDSHAKE_TIMEOUT_MILLIS = 5_000;
+
+  static final byte CUSTOMER = 'C';
+  static final byte ACCOUNT = 'A';
+  static final byte ACCOUNT_UPDATE = 'U';
+  static final byte STANDING_ORDER = 'O';
+  static final byte SNAPSHOT_END = 'E';
+  static final byte TRANSACTION = 'T';
+  static final byte HEARTBEAT = 'H';
+  static final byte ACK = 'K';
+  static final byte HELLO = 'L';
+  static final byte CHALLENGE = 'G';
+  static final byte PROOF = 'F';
+
+  private static final int NONCE_LENGTH = 32;
+  private static final int MAX_HANDSHAKE_FRAME = 256;
+  private static final String HMAC = "HmacSHA256";
+  private static final SecureRandom RANDOM = new SecureRandom();
+  private static final ObjectInputFilter FILTER = ObjectInputFilter.Config.createFilter(
+      "maxdepth=32;"
+          + "de.raywo.banking.domain.*;"
+          + "de.raywo.banking.system.replication.AccountUpdate;"
+          + "java.lang.Object;java.lang.Enum;java.lang.Number;"
+          + "java.math.BigDecimal;java.math.BigInteger;"
+          + "java.time.*;"
+          + "java.util.HashMap;java.util.Map$Entry;java.util.CollSer;java.util.ImmutableCollections$*;"
+          + "java.util.Currency;java.util.UUID;"
+          + "!*"
+  );
+
+
+  private ReplicationProtocol() {
+  }
+
+
+  static byte[] object(byte type, Serializable object) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    bytes.write(type);
+
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(object);
+    }
+
+    return bytes.toByteArray();
+  }
+
+
+  static byte[] transaction(TransactionEvent event) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(96);
+    DataOutputStream out = new DataOutputStream(bytes);
+
+    out.writeByte(TRANSACTION);
+    TransactionEventCodec.write(out, event.getSequence(), event.getPosition(), event.getTransaction());
+
+    return bytes.toByteArray();
+  }
+
+
+  static byte[] sequence(byte type, long sequence) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(Long.BYTES * 2 + 1);
+    DataOutputStream out = new DataOutputStream(bytes);
+
+    try {
+      out.writeByte(type);
+      out.writeLong(sequence);
+      out.writeLong(System.currentTimeMillis());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    return bytes.toByteArray();
+  }
+
+
+  static void write(DataOutputStream out, byte[] frame) throws IOException {
+    out.writeInt(frame.length);
+    out.write(frame);
+  }
+
+
+  static DataInputStream read(DataInputStream in) throws IOException {
+    byte[] frame = new byte[in.readInt()];
+    in.readFully(frame);
+
+    return new DataInputStream(new ByteArrayInputStream(frame));
+  }
+
+
+  /**
+   * Weist auf Seiten des Primärsystems nach, dass der Standby das Geheimnis
+   * kennt, und beweist ihm dasselbe. Wirft eine {@link IOException}, wenn der
+   * Nachweis scheitert oder ausbleibt.
+   */
+  static void authenticateStandby(Socket socket, byte[] secret) throws IOException {
+    handshake(socket, () -> {
+      DataInputStream in = new DataInputStream(socket.getInputStream());
+      DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+
+      byte[] standbyNonce = expect(in, HELLO, NONCE_LENGTH);
+      byte[] primaryNonce = nonce();
+      write(out, concat(CHALLENGE, primaryNonce, proof(secret, CHALLENGE, standbyNonce, primaryNonce)));
+      out.flush();
+
+      byte[] received = expect(in, PROOF, -1);
+      if (!MessageDigest.isEqual(received, proof(secret, PROOF, standbyNonce, primaryNonce))) {
+        throw new IOException("Der Standby hat sich nicht ausgewiesen.");
+      }
+    });
+  }
+
+
+  /**
+   * Weist auf Seiten des Standbys nach, dass das Primärsystem das Geheimnis
+   * kennt, und beweist ihm dasselbe.
+   */
+  static void authenticatePrimary(Socket socket, byte[] secret) throws IOException {
+    handshake(socket, () -> {
+      DataInputStream in = new DataInputStream(socket.getInputStream());
+      DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+
+      byte[] standbyNonce = nonce();
+      write(out, concat(HELLO, standbyNonce));
+      out.flush();
+
+      byte[] challenge = expect(in, CHALLENGE, -1);
+      if (challenge.length <= NONCE_LENGTH) {
+        throw new IOException("Das Primärsystem hat sich nicht ausgewiesen.");
+      }
+
+      byte[] primaryNonce = Arrays.copyOf(challenge, NONCE_LENGTH);
+      byte[] received = Arrays.copyOfRange(challenge, NONCE_LENGTH, challenge.length);
+      if (!MessageDigest.isEqual(received, proof(secret, CHALLENGE, standbyNonce, primaryNonce))) {
+        throw new IOException("Das Primärsystem hat sich nicht ausgewiesen.");
+      }
+
+      write(out, concat(PROOF, proof(secret, PROOF, standbyNonce, primaryNonce)));
+      out.flush();
+    });
+  }
+
+
+  static byte[] requireSecret(byte[] secret) {
+    if (secret == null || secret.length < MIN_SECRET_LENGTH) {
+      throw new IllegalArgumentException(
+          "Das Replikationsgeheimnis muss mindestens " + MIN_SECRET_LENGTH + " Bytes lang sein.");
+    }
+
+    return secret.clone();
+  }
+
+
+  private static void handshake(Socket socket, Handshake handshake) throws IOException {
+    int timeout = socket.getSoTimeout();
+    socket.setSoTimeout(HANDSHAKE_TIMEOUT_MILLIS);
+
+    try {
+      handshake.run();
+    } catch (EOFException e) {
+      throw new IOException("Die Gegenstelle hat den Verbindungsaufbau abgebrochen.", e);
+    } finally {
+      socket.setSoTimeout(timeout);
+    }
+  }
+
+
+  /**
+   * Liest einen Rahmen des Verbindungsaufbaus. Seine Länge ist begrenzt,
+   * damit eine fremde Gegenstelle keinen beliebig großen Puffer erzwingt.
+   */
+  private static byte[] expect(DataInputStream in, byte type, int length) throws IOException {
+    int frameLength = in.readInt();
+    if (frameLength < 1 || frameLength > MAX_HANDSHAKE_FRAME) {
+      throw new IOException("Ungültiger Rahmen beim Verbindungsaufbau.");
+    }
+
+    byte[] frame = new byte[frameLength];
+    in.readFully(frame);
+
+    if (frame[0] != type || (length >= 0 && frameLength - 1 != length)) {
+      throw new IOException("Unerwarteter Rahmen beim Verbindungsaufbau.");
+    }
+
+    return Arrays.copyOfRange(frame, 1, frameLength);
+  }
+
+
+  private static byte[] proof(byte[] secret, byte role, byte[] standbyNonce, byte[] primaryNonce) {
+    try {
+      Mac mac = Mac.getInstance(HMAC);
+      mac.init(new SecretKeySpec(secret, HMAC));
+      mac.update(role);
+      mac.update(standbyNonce);
+      mac.update(primaryNonce);
+
+      return mac.doFinal();
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException(HMAC + " ist nicht verfügbar.", e);
+    }
+  }
+
+
+  private static byte[] nonce() {
+    byte[] nonce = new byte[NONCE_LENGTH];
+    RANDOM.nextBytes(nonce);
+
+    return nonce;
+  }
+
+
+  private static byte[] concat(byte type, byte[]... parts) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    bytes.write(type);
+
+    for (byte[] part : parts) {
+      bytes.writeBytes(part);
+    }
+
+    return bytes.toByteArray();
+  }
+
+
+  static Object readObject(DataInputStream frame) throws IOException {
+    try (ObjectInputStream in = new ObjectInputStream(frame)) {
+      in.setObjectInputFilter(FILTER);
+      return in.readObject();
+    } catch (ClassNotFoundException e) {
+      throw new IOException("Unbekannter Typ im Replikationsstrom: " + e.getMessage(), e);
+    }
+  }
+
+
+  @FunctionalInterface
+  private interface Handshake {
+
+    void run() throws IOException;
+
+  }
+
+}
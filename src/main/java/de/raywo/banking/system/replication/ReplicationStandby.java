@@ -0,0 +1,353 @@
+package de.raywo.banking.system.replication;
+
+import de.raywo.banking.domain.Account;
+import de.raywo.banking.domain.AccountMismatchException;
+import de.raywo.banking.domain.AccountState;
+import de.raywo.banking.domain.Customer;
+import de.raywo.banking.domain.StandingOrder;
+import de.raywo.banking.persistence.DataDirectory;
+import de.raywo.banking.persistence.Repository;
+import de.raywo.banking.system.SiBank;
+import de.raywo.banking.system.events.TransactionEvent;
+import de.raywo.banking.system.events.TransactionEventCodec;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Ein Standby, der den Strom eines {@link ReplicationPrimary} laufend auf
+ * eigene Repositories anwendet. Jede Transaktion trägt ihre Position im
+ * Verlauf des Kontos; bereits enthaltene Transaktionen werden übersprungen,
+ * so dass sich Bestand und Strom überlappen dürfen.
+ * <p>
+ * Bis zum Ende des Bestands kann eine Transaktion vor ihrem Konto
+ * eintreffen, wenn sie gebucht wurde, nachdem das Primärsystem das Konto
+ * serialisiert hat. Solche Transaktionen werden zurückgehalten, bis das
+ * Konto aus dem Bestand da ist.
+ * <p>
+ * Vormerkungen und Einstellungen eines Kontos kommen als eigener Rahmen mit
+ * dem jeweils aktuellen Stand und ersetzen den bisherigen; Daueraufträge
+ * werden bei jeder Änderung als Ganzes übertragen.
+ * <p>
+ * Nach {@link #promote()} nimmt der Standby keine Daten mehr an und seine
+ * Repositories können ohne erneutes Einlesen weiterverwendet werden. Sie
+ * speichern in das eigene Datenverzeichnis des Standbys, das er von Anfang
+ * an gesperrt hält; ein Verzeichnis, das das Primärsystem belegt, lässt sich
+ * gar nicht erst öffnen.
+ */
+public class ReplicationStandby implements AutoCloseable {
+
+  private final DataDirectory dataDirectory;
+  private final Repository<String, Account> accounts;
+  private final Repository<UUID, Customer> customers;
+  private final Repository<UUID, StandingOrder> standingOrders;
+  private final Set<String> snapshotAccounts = new HashSet<>();
+  private final Map<String, List<TransactionEvent>> heldBack = new HashMap<>();
+  private volatile Socket socket;
+  private volatile Thread receiver;
+  private volatile boolean caughtUp;
+  private volatile boolean promoted;
+  private volatile long appliedSequence = -1;
+  private volatile long primarySequence = -1;
+  private volatile long lastContactMillis;
+
+
+  public ReplicationStandby(DataDirectory dataDirectory) {
+    this.dataDirectory = Objects.requireNonNull(dataDirectory);
+    this.accounts = SiBank.createAccountRepository(dataDirectory.getPath());
+    this.customers = SiBank.createCustomerRepository(dataDirectory.getPath());
+    this.standingOrders = SiBank.createStandingOrderRepository(dataDirectory.getPath());
+  }
+
+
+  public DataDirectory getDataDirectory() {
+    return dataDirectory;
+  }
+
+
+  public Repository<String, Account> getAccounts() {
+    return accounts;
+  }
+
+
+  public Repository<UUID, Customer> getCustomers() {
+    return customers;
+  }
+
+
+  public Repository<UUID, StandingOrder> getStandingOrders() {
+    return standingOrders;
+  }
+
+
+  /**
+   * Verbindet den Standby mit einem Primärsystem, das sich mit demselben
+   * Geheimnis ausweisen muss.
+   */
+  public synchronized void connect(String host, int port, byte[] secret) throws IOException {
+    byte[] key = ReplicationProtocol.requireSecret(secret);
+
+    if (promoted) {
+      throw new IllegalStateException("Der Standby wurde bereits zum Primärsystem.");
+    }
+
+    close();
+
+    Socket connection = new Socket();
+    connection.setTcpNoDelay(true);
+    connection.connect(new InetSocketAddress(host, port));
+
+    try {
+      ReplicationProtocol.authenticatePrimary(connection, key);
+    } catch (IOException e) {
+      connection.close();
+      throw e;
+    }
+
+    caughtUp = false;
+    socket = connection;
+    receiver = new Thread(() -> receive(connection), "replication-standby");
+    receiver.setDaemon(true);
+    receiver.start();
+  }
+
+
+  public boolean isConnected() {
+    Thread current = receiver;
+    return current != null && current.isAlive();
+  }
+
+
+  /**
+   * Liefert {@code true}, sobald der vollständige Bestand eingetroffen ist.
+   */
+  public boolean isCaughtUp() {
+    return caughtUp;
+  }
+
+
+  public long getAppliedSequence() {
+    return appliedSequence;
+  }
+
+
+  public long getPrimarySequence() {
+    return primarySequence;
+  }
+
+
+  public long getLag() {
+    return Math.max(0, primarySequence - appliedSequence);
+  }
+
+
+  public long getLastContactMillis() {
+    return lastContactMillis;
+  }
+
+
+  public boolean awaitSequence(long sequence, Duration timeout) throws InterruptedException {
+    long deadline = System.nanoTime() + timeout.toNanos();
+
+    while (!caughtUp || appliedSequence < sequence) {
+      if (System.nanoTime() > deadline || !isConnected()) {
+        return false;
+      }
+      Thread.sleep(1);
+    }
+
+    return true;
+  }
+
+
+  /**
+   * Trennt die Verbindung zum Primärsystem; danach ändern sich die
+   * Repositories nur noch durch ihren neuen Besitzer.
+   */
+  public synchronized void promote() {
+    close();
+    promoted = true;
+  }
+
+
+  public boolean isPromoted() {
+    return promoted;
+  }
+
+
+  @Override
+  public synchronized void close() {
+    Socket connection = socket;
+    Thread current = receiver;
+
+    if (connection == null) {
+      return;
+    }
+
+    try {
+      connection.close();
+    } catch (IOException e) {
+      // Die Verbindung ist ohnehin beendet.
+    }
+
+    try {
+      current.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    socket = null;
+    receiver = null;
+  }
+
+
+  private void receive(Socket connection) {
+    TransactionEvent event = new TransactionEvent();
+    snapshotAccounts.clear();
+    heldBack.clear();
+
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+         DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()))) {
+      while (true) {
+        DataInputStream frame = ReplicationProtocol.read(in);
+        apply(frame, event);
+        lastContactMillis = System.currentTimeMillis();
+
+        if (in.available() == 0) {
+          ReplicationProtocol.write(out, ReplicationProtocol.sequence(ReplicationProtocol.ACK, appliedSequence));
+          out.flush();
+        }
+      }
+    } catch (EOFException e) {
+      // Das Primärsystem hat die Verbindung beendet.
+    } catch (IOException | RuntimeException e) {
+      if (!connection.isClosed()) {
+        System.err.println("Replikation abgebrochen: " + e.getMessage());
+      }
+    }
+  }
+
+
+  private void apply(DataInputStream frame, TransactionEvent event) throws IOException {
+    byte type = frame.readByte();
+
+    switch (type) {
+      case ReplicationProtocol.TRANSACTION -> {
+        TransactionEventCodec.read(frame, event);
+        applyTransaction(event);
+      }
+      case ReplicationProtocol.ACCOUNT -> {
+        Account account = (Account) ReplicationProtocol.readObject(frame);
+        if (!caughtUp) {
+          accounts.save(account);
+          snapshotAccounts.add(account.getIban());
+          applyHeldBack(account);
+        } else if (accounts.findById(account.getIban()).isEmpty()) {
+          accounts.save(account);
+        }
+      }
+      case ReplicationProtocol.ACCOUNT_UPDATE -> applyUpdate((AccountUpdate) ReplicationProtocol.readObject(frame));
+      case ReplicationProtocol.CUSTOMER -> customers.save((Customer) ReplicationProtocol.readObject(frame));
+      case ReplicationProtocol.STANDING_ORDER ->
+          standingOrders.save((StandingOrder) ReplicationProtocol.readObject(frame));
+      case ReplicationProtocol.SNAPSHOT_END -> {
+        if (!heldBack.isEmpty()) {
+          throw new IOException("Unbekanntes Konto im Replikationsstrom: " + heldBack.keySet().iterator().next());
+        }
+
+        snapshotAccounts.clear();
+        advance(frame.readLong());
+        caughtUp = true;
+      }
+      case ReplicationProtocol.HEARTBEAT -> primarySequence = Math.max(primarySequence, frame.readLong());
+      default -> throw new IOException("Unbekannter Rahmentyp: " + type);
+    }
+  }
+
+
+  private void applyTransaction(TransactionEvent event) throws IOException {
+    String iban = event.getTransaction().getIban();
+
+    // Vor dem Ende des Bestands ist ein vorhandenes Konto womöglich noch
+    // der Stand einer früheren Verbindung.
+    if (!caughtUp && !snapshotAccounts.contains(iban)) {
+      TransactionEvent copy = new TransactionEvent();
+      copy.set(event.getSequence(), event.getPosition(), event.getTransaction());
+      heldBack.computeIfAbsent(iban, key -> new ArrayList<>()).add(copy);
+      return;
+    }
+
+    Account account = accounts.findById(iban)
+        .orElseThrow(() -> new IOException("Unbekanntes Konto im Replikationsstrom: " + iban));
+    replicate(account, event);
+  }
+
+
+  /**
+   * Übernimmt Vormerkungen und Einstellungen eines Kontos. Das Primärsystem
+   * sendet sie erst nach dem Konto selbst; fehlt es, folgt es noch mit
+   * diesem oder einem neueren Stand.
+   */
+  private void applyUpdate(AccountUpdate update) {
+    if (!caughtUp && !snapshotAccounts.contains(update.iban())) {
+      return;
+    }
+
+    Optional<Account> account = accounts.findById(update.iban());
+    if (account.isEmpty()) {
+      return;
+    }
+
+    AccountState state = update.state();
+    Customer owner = state.owner() == null
+        ? null
+        : customers.findById(state.owner().getId()).orElse(state.owner());
+
+    account.get().replicateState(
+        new AccountState(state.balance(), state.reserved(), state.limit(), state.status(), state.interestRate(), owner),
+        update.holds()
+    );
+  }
+
+
+  /**
+   * Wendet die zurückgehaltenen Transaktionen eines gerade aus dem Bestand
+   * eingetroffenen Kontos an; was der Bestand schon enthält, wird
+   * übersprungen.
+   */
+  private void applyHeldBack(Account account) throws IOException {
+    List<TransactionEvent> events = heldBack.remove(account.getIban());
+
+    if (events != null) {
+      for (TransactionEvent event : events) {
+        replicate(account, event);
+      }
+    }
+  }
+
+
+  private void replicate(Account account, TransactionEvent event) throws IOException {
+    try {
+      account.replicate(event.getTransaction(), event.getPosition());
+    } catch (AccountMismatchException | IllegalStateException e) {
+      throw new IOException(e.getMessage(), e);
+    }
+
+    advance(event.getSequence());
+  }
+
+
+  private void advance(long sequence) {
+    if (sequence > appliedSequence) {
+      appliedSequence = sequence;
+    }
+
+    if (sequence > primarySequence) {
+      primarySequence = sequence;
+    }
+  }
+
+}
@@ -0,0 +1,234 @@
+package de.raywo.banking.system.replication;
+
+import de.raywo.banking.domain.Account;
+import de.raywo.banking.domain.Customer;
+import de.raywo.banking.domain.StandingOrder;
+import de.raywo.banking.system.events.Subscription;
+import de.raywo.banking.system.events.TransactionEvent;
+import de.raywo.banking.system.events.TransactionEventStream;
+
+import java.io.*;
+import java.net.Socket;
+import java.util.Collection;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Die Verbindung des Primärsystems zu einem Standby.
+ * <p>
+ * Ein eigener Thread schreibt die Rahmen aus einer Warteschlange auf den
+ * Socket, so dass weder buchende Threads noch der Abonnent des
+ * Ereignisstroms auf das Netz warten. Die Bestätigungen des Standbys liest
+ * ein zweiter Thread.
+ * <p>
+ * Die Warteschlange fasst höchstens {@value #MAX_QUEUED_FRAMES} Rahmen. Läuft
+ * sie über, weil der Standby nicht nachkommt, wird die Verbindung getrennt;
+ * der Standby muss sich dann neu anmelden und erhält den Bestand erneut.
+ */
+public class StandbyConnection implements AutoCloseable {
+
+  static final int MAX_QUEUED_FRAMES = 65_536;
+  private static final long HEARTBEAT_MILLIS = 100;
+  private static final long SNAPSHOT_STALL_NANOS = TimeUnit.SECONDS.toNanos(10);
+  private static final byte[] CLOSE = new byte[0];
+
+  private final Socket socket;
+  private final TransactionEventStream events;
+  private final BlockingQueue<byte[]> frames = new LinkedBlockingQueue<>(MAX_QUEUED_FRAMES);
+  private final Thread sender;
+  private final Thread receiver;
+  private volatile Subscription subscription;
+  private volatile long acknowledgedSequence = -1;
+  private volatile boolean closed;
+  private volatile boolean overflowed;
+
+
+  StandbyConnection(Socket socket, TransactionEventStream events) {
+    this.socket = socket;
+    this.events = events;
+    this.sender = new Thread(this::send, "replication-send-" + socket.getPort());
+    this.receiver = new Thread(this::receive, "replication-ack-" + socket.getPort());
+    this.sender.setDaemon(true);
+    this.receiver.setDaemon(true);
+  }
+
+
+  public String getRemoteAddress() {
+    return socket.getRemoteSocketAddress().toString();
+  }
+
+
+  public long getAcknowledgedSequence() {
+    return acknowledgedSequence;
+  }
+
+
+  public long getLag() {
+    return Math.max(0, events.getLastPublishedSequence() - acknowledgedSequence);
+  }
+
+
+  public int getQueuedFrames() {
+    return frames.size();
+  }
+
+
+  public boolean isOpen() {
+    return !closed;
+  }
+
+
+  /**
+   * Abonniert den Ereignisstrom und stellt danach den Bestand ein. Ereignisse,
+   * die der Bestand schon enthält, erkennt der Standby an ihrer Position.
+   * Der Bestand belegt höchstens die Hälfte der Warteschlange, damit
+   * gleichzeitig gebuchte Transaktionen sie nicht zum Überlaufen bringen.
+   */
+  void start(Collection<Customer> customers, Collection<Account> accounts,
+             Collection<StandingOrder> standingOrders) throws IOException {
+    sender.start();
+    receiver.start();
+
+    subscription = events.subscribe("standby-" + socket.getPort(), this::eventPublished);
+    long snapshotSequence = subscription.getSequence();
+
+    for (Customer customer : customers) {
+      enqueueSnapshot(ReplicationProtocol.object(ReplicationProtocol.CUSTOMER, customer));
+    }
+
+    for (Account account : accounts) {
+      enqueueSnapshot(ReplicationProtocol.object(ReplicationProtocol.ACCOUNT, account));
+    }
+
+    for (StandingOrder order : standingOrders) {
+      enqueueSnapshot(ReplicationProtocol.object(ReplicationProtocol.STANDING_ORDER, order));
+    }
+
+    enqueue(ReplicationProtocol.sequence(ReplicationProtocol.SNAPSHOT_END, snapshotSequence));
+  }
+
+
+  void enqueue(byte[] frame) {
+    if (!closed && !frames.offer(frame)) {
+      overflow();
+    }
+  }
+
+
+  private void enqueueSnapshot(byte[] frame) throws IOException {
+    long deadline = System.nanoTime() + SNAPSHOT_STALL_NANOS;
+
+    while (frames.size() >= MAX_QUEUED_FRAMES / 2) {
+      if (closed || System.nanoTime() > deadline) {
+        throw new IOException("Der Standby " + getRemoteAddress() + " nimmt den Bestand nicht ab.");
+      }
+
+      LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    enqueue(frame);
+  }
+
+
+  /**
+   * Trennt die Verbindung, ohne auf den Abonnenten zu warten; {@link #close()}
+   * folgt aus den Threads der Verbindung, sobald der Socket geschlossen ist.
+   */
+  private void overflow() {
+    if (overflowed) {
+      return;
+    }
+
+    overflowed = true;
+    System.err.println("Standby " + getRemoteAddress() + " kommt nicht nach; die Verbindung wird getrennt.");
+
+    try {
+      socket.close();
+    } catch (IOException e) {
+      // Die Verbindung ist ohnehin beendet.
+    }
+  }
+
+
+  @Override
+  public synchronized void close() {
+    if (closed) {
+      return;
+    }
+
+    closed = true;
+    frames.clear();
+    frames.offer(CLOSE);
+
+    Subscription current = subscription;
+    if (current != null) {
+      current.close();
+    }
+
+    try {
+      socket.close();
+    } catch (IOException e) {
+      // Die Verbindung ist ohnehin beendet.
+    }
+  }
+
+
+  @Override
+  public String toString() {
+    return getRemoteAddress() + " (bestätigt: " + acknowledgedSequence + ", Rückstand: " + getLag() + ")";
+  }
+
+
+  private void eventPublished(TransactionEvent event, long sequence, boolean endOfBatch) throws IOException {
+    enqueue(ReplicationProtocol.transaction(event));
+  }
+
+
+  private void send() {
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+      while (true) {
+        byte[] frame = frames.poll(HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+
+        if (frame == CLOSE) {
+          return;
+        }
+
+        if (frame == null) {
+          frame = ReplicationProtocol.sequence(ReplicationProtocol.HEARTBEAT, events.getLastPublishedSequence());
+        }
+
+        ReplicationProtocol.write(out, frame);
+
+        if (frames.isEmpty()) {
+          out.flush();
+        }
+      }
+    } catch (IOException | InterruptedException e) {
+      if (!closed) {
+        System.err.println("Replikation zu " + getRemoteAddress() + " abgebrochen: " + e.getMessage());
+      }
+    } finally {
+      close();
+    }
+  }
+
+
+  private void receive() {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+      while (true) {
+        DataInputStream frame = ReplicationProtocol.read(in);
+
+        if (frame.readByte() == ReplicationProtocol.ACK) {
+          acknowledgedSequence = frame.readLong();
+        }
+      }
+    } catch (IOException e) {
+      // Der Standby hat die Verbindung beendet.
+    } finally {
+      close();
+    }
+  }
+
+}
@@ -0,0 +1,42 @@
+package de.raywo.banking.system.search;
+
+import java.util.Arrays;
+
+/**
+ * Eine wachsende Liste von {@code int}s ohne Boxing.
+ */
+final class IntList {
+
+  private int[] values = new int[4];
+  private int size;
+
+
+  void add(int value) {
+    if (size == values.length) {
+      values = Arrays.copyOf(values, size + (size >> 1) + 1);
+    }
+
+    values[size++] = value;
+  }
+
+
+  int get(int index) {
+    return values[index];
+  }
+
+
+  void set(int index, int value) {
+    values[index] = value;
+  }
+
+
+  int size() {
+    return size;
+  }
+
+
+  int[] toArray() {
+    return Arrays.copyOf(values, size);
+  }
+
+}
@@ -0,0 +1,6 @@
+package de.raywo.banking.system.search;
+
+import de.raywo.banking.domain.Transaction;
+
+public record SearchHit(String iban, int position, Transaction transaction) {
+}
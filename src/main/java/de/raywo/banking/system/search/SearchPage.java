@@ -0,0 +1,16 @@
+package de.raywo.banking.system.search;
+
+import java.util.List;
+
+public record SearchPage(List<SearchHit> hits, int total, int offset, int limit) {
+
+  public SearchPage {
+    hits = List.copyOf(hits);
+  }
+
+
+  public boolean hasMore() {
+    return offset + hits.size() < total;
+  }
+
+}
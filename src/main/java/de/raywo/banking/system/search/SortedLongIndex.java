@@ -0,0 +1,194 @@
+package de.raywo.banking.system.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Dokumente sortiert nach einem {@code long}-Schlüssel, etwa Betrag oder
+ * Zeitpunkt.
+ * <p>
+ * Neue Einträge landen zunächst in einem kleinen unsortierten Puffer. Ist er
+ * voll, wird er sortiert als eigener Lauf abgelegt; Läufe ähnlicher Größe
+ * werden wie bei einem Binärzähler zusammengemischt. Es gibt daher höchstens
+ * logarithmisch viele Läufe, und jeder Eintrag wird nur logarithmisch oft
+ * umkopiert. Eine Bereichsabfrage sucht in jedem Lauf binär und durchläuft nur
+ * den Puffer linear.
+ */
+final class SortedLongIndex {
+
+  private static final int BUFFER = 4096;
+
+  private final List<Run> runs = new ArrayList<>();
+  private final long[] pendingKeys = new long[BUFFER];
+  private final int[] pendingDocs = new int[BUFFER];
+  private int pending;
+
+
+  void add(long key, int doc) {
+    pendingKeys[pending] = key;
+    pendingDocs[pending] = doc;
+
+    if (++pending == BUFFER) {
+      flush();
+    }
+  }
+
+
+  /**
+   * Zählt die Dokumente mit einem Schlüssel in {@code [from, to]}.
+   */
+  int count(long from, long to) {
+    int count = 0;
+
+    for (Run run : runs) {
+      count += run.upperBound(to) - run.lowerBound(from);
+    }
+
+    for (int i = 0; i < pending; i++) {
+      if (pendingKeys[i] >= from && pendingKeys[i] <= to) {
+        count++;
+      }
+    }
+
+    return count;
+  }
+
+
+  /**
+   * Liefert die Dokumente mit einem Schlüssel in {@code [from, to]},
+   * aufsteigend nach Dokumentnummer sortiert.
+   */
+  int[] docs(long from, long to) {
+    IntList result = new IntList();
+
+    for (Run run : runs) {
+      int upper = run.upperBound(to);
+      for (int i = run.lowerBound(from); i < upper; i++) {
+        result.add(run.docs[i]);
+      }
+    }
+
+    for (int i = 0; i < pending; i++) {
+      if (pendingKeys[i] >= from && pendingKeys[i] <= to) {
+        result.add(pendingDocs[i]);
+      }
+    }
+
+    int[] sorted = result.toArray();
+    Arrays.sort(sorted);
+
+    return sorted;
+  }
+
+
+  /**
+   * Bietet {@code top} die Dokumente mit einem Schlüssel in {@code [from, to]}
+   * an. Jeder Lauf wird vom größten Schlüssel abwärts gelesen, bis keiner
+   * seiner restlichen Einträge mehr in {@code top} passt.
+   */
+  void offerLargest(long from, long to, TopDocs top) {
+    for (Run run : runs) {
+      int lower = run.lowerBound(from);
+
+      for (int i = run.upperBound(to) - 1; i >= lower && top.accepts(run.keys[i]); i--) {
+        top.offer(run.keys[i], run.docs[i]);
+      }
+    }
+
+    for (int i = 0; i < pending; i++) {
+      if (pendingKeys[i] >= from && pendingKeys[i] <= to) {
+        top.offer(pendingKeys[i], pendingDocs[i]);
+      }
+    }
+  }
+
+
+  private void flush() {
+    Integer[] order = new Integer[pending];
+    for (int i = 0; i < pending; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, (a, b) -> Long.compare(pendingKeys[a], pendingKeys[b]));
+
+    long[] keys = new long[pending];
+    int[] docs = new int[pending];
+    for (int i = 0; i < pending; i++) {
+      keys[i] = pendingKeys[order[i]];
+      docs[i] = pendingDocs[order[i]];
+    }
+
+    runs.add(new Run(keys, docs));
+    pending = 0;
+
+    while (runs.size() > 1 && runs.get(runs.size() - 2).size() <= runs.get(runs.size() - 1).size() * 2) {
+      Run newer = runs.remove(runs.size() - 1);
+      Run older = runs.remove(runs.size() - 1);
+      runs.add(older.merge(newer));
+    }
+  }
+
+
+  private record Run(long[] keys, int[] docs) {
+
+    int size() {
+      return keys.length;
+    }
+
+
+    int lowerBound(long key) {
+      int low = 0;
+      int high = keys.length;
+
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (keys[middle] < key) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+
+      return low;
+    }
+
+
+    int upperBound(long key) {
+      int low = 0;
+      int high = keys.length;
+
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (keys[middle] <= key) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+
+      return low;
+    }
+
+
+    Run merge(Run other) {
+      long[] mergedKeys = new long[keys.length + other.keys.length];
+      int[] mergedDocs = new int[mergedKeys.length];
+      int i = 0;
+      int j = 0;
+
+      for (int k = 0; k < mergedKeys.length; k++) {
+        if (j >= other.keys.length || (i < keys.length && keys[i] <= other.keys[j])) {
+          mergedKeys[k] = keys[i];
+          mergedDocs[k] = docs[i++];
+        } else {
+          mergedKeys[k] = other.keys[j];
+          mergedDocs[k] = other.docs[j++];
+        }
+      }
+
+      return new Run(mergedKeys, mergedDocs);
+    }
+
+  }
+
+}
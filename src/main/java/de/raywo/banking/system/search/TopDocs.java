@@ -0,0 +1,121 @@
+package de.raywo.banking.system.search;
+
+import java.util.Arrays;
+
+/**
+ * Behält von allen angebotenen Dokumenten die {@code capacity} mit dem
+ * größten Schlüssel, bei gleichem Schlüssel die mit der größeren Nummer.
+ * <p>
+ * Die Dokumente liegen in einem Min-Heap aus zwei parallelen Arrays, sodass
+ * weder Boxing noch ein Comparator nötig ist. Die Arrays wachsen erst mit den
+ * Treffern bis zur Kapazität.
+ */
+final class TopDocs {
+
+  private final int capacity;
+  private long[] keys;
+  private int[] docs;
+  private int size;
+
+
+  TopDocs(int capacity) {
+    this.capacity = capacity;
+    this.keys = new long[Math.min(capacity, 16)];
+    this.docs = new int[keys.length];
+  }
+
+
+  /**
+   * Meldet, ob ein Dokument mit diesem Schlüssel noch aufgenommen werden
+   * könnte.
+   */
+  boolean accepts(long key) {
+    if (size < capacity) {
+      return true;
+    }
+
+    return capacity > 0 && key >= keys[0];
+  }
+
+
+  void offer(long key, int doc) {
+    if (size < capacity) {
+      if (size == keys.length) {
+        int grown = (int) Math.min(capacity, 2L * size);
+        keys = Arrays.copyOf(keys, grown);
+        docs = Arrays.copyOf(docs, grown);
+      }
+
+      siftUp(size++, key, doc);
+    } else if (capacity > 0 && greater(key, doc, keys[0], docs[0])) {
+      siftDown(0, key, doc);
+    }
+  }
+
+
+  /**
+   * Leert den Heap und liefert die Dokumente absteigend nach Schlüssel.
+   */
+  int[] drainDescending() {
+    int[] result = new int[size];
+
+    for (int i = size - 1; i >= 0; i--) {
+      result[i] = docs[0];
+      size--;
+
+      if (size > 0) {
+        siftDown(0, keys[size], docs[size]);
+      }
+    }
+
+    return result;
+  }
+
+
+  private void siftUp(int index, long key, int doc) {
+    while (index > 0) {
+      int parent = (index - 1) >>> 1;
+      if (!greater(keys[parent], docs[parent], key, doc)) {
+        break;
+      }
+
+      keys[index] = keys[parent];
+      docs[index] = docs[parent];
+      index = parent;
+    }
+
+    keys[index] = key;
+    docs[index] = doc;
+  }
+
+
+  private void siftDown(int index, long key, int doc) {
+    int half = size >>> 1;
+
+    while (index < half) {
+      int child = 2 * index + 1;
+      int right = child + 1;
+
+      if (right < size && greater(keys[child], docs[child], keys[right], docs[right])) {
+        child = right;
+      }
+
+      if (!greater(key, doc, keys[child], docs[child])) {
+        break;
+      }
+
+      keys[index] = keys[child];
+      docs[index] = docs[child];
+      index = child;
+    }
+
+    keys[index] = key;
+    docs[index] = doc;
+  }
+
+
+  private static boolean greater(long key, int doc, long otherKey, int otherDoc) {
+    return key > otherKey || (key == otherKey && doc > otherDoc);
+  }
+
+}
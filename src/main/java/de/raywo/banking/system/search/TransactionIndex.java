@@ -0,0 +1,347 @@
+package de.raywo.banking.system.search;
+
+import de.raywo.banking.domain.Account;
+import de.raywo.banking.domain.Transaction;
+import de.raywo.banking.domain.TransactionLog;
+import de.raywo.banking.system.events.EventHandler;
+import de.raywo.banking.system.events.TransactionEvent;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Ein Suchindex über alle Umsätze, der als Abonnent des Ereignisstroms
+ * fortgeschrieben wird.
+ * <p>
+ * Jeder Umsatz erhält eine fortlaufende Dokumentnummer; Betrag und Zeitpunkt
+ * liegen in primitiven Arrays. Zu jedem Wort eines Verwendungszwecks gibt es
+ * eine aufsteigend sortierte Liste der Dokumente, zu Betrag und Zeitpunkt je
+ * einen {@link SortedLongIndex}. Eine Abfrage schneidet die Wortlisten oder
+ * beginnt mit dem selektiveren Bereich und prüft die übrigen Kriterien direkt
+ * an den Arrays. Erst die Treffer der angeforderten Seite werden aus dem
+ * Verlauf ihres Kontos gelesen.
+ * <p>
+ * Die neuesten Treffer einer Seite sammelt ein {@link TopDocs}-Heap im
+ * selben Durchlauf, der die Treffer zählt. Abfragen ohne Text und ohne
+ * Betragsgrenzen lesen Anzahl und Seite direkt aus dem Zeitindex.
+ * <p>
+ * Ein Umsatz wird nur an der nächsten erwarteten Position seines Kontos
+ * übernommen. Dadurch dürfen sich {@link #indexAll(Collection)} und der
+ * Ereignisstrom beim Start überlappen.
+ * <p>
+ * Der Index ist nicht begrenzt: Er hält für jeden Umsatz seit dem Start
+ * Dokumentspalten, Einträge im Betrags- und Zeitindex und einen Eintrag je
+ * Wort, bei drei Wörtern je Zweck rund 70 Byte, und wächst mit dem Verlauf
+ * aller Konten.
+ */
+public class TransactionIndex implements EventHandler<TransactionEvent> {
+
+  private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+  private final Function<String, Account> accounts;
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Map<String, Integer> accountIds = new HashMap<>();
+  private final List<String> ibans = new ArrayList<>();
+  private final IntList indexedCounts = new IntList();
+  private final Map<String, IntList> postings = new HashMap<>();
+  private final SortedLongIndex amountIndex = new SortedLongIndex();
+  private final SortedLongIndex timeIndex = new SortedLongIndex();
+  private int[] docAccounts = new int[1024];
+  private int[] docPositions = new int[1024];
+  private long[] docAmounts = new long[1024];
+  private long[] docTimes = new long[1024];
+  private int docCount;
+  private volatile long indexedSequence = -1;
+
+
+  public TransactionIndex(Function<String, Account> accounts) {
+    this.accounts = Objects.requireNonNull(accounts);
+  }
+
+
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return docCount;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+
+  public long getIndexedSequence() {
+    return indexedSequence;
+  }
+
+
+  @Override
+  public void onEvent(TransactionEvent event, long sequence, boolean endOfBatch) {
+    Transaction transaction = event.getTransaction();
+
+    lock.writeLock().lock();
+    try {
+      int account = accountId(transaction.getIban());
+
+      if (event.getPosition() == indexedCounts.get(account)) {
+        add(
+            account,
+            event.getPosition(),
+            transaction.getAmount().minorUnits(),
+            TransactionLog.toEpochMicros(transaction.getTimestamp()),
+            transaction.getPurpose()
+        );
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+
+    indexedSequence = sequence;
+  }
+
+
+  /**
+   * Übernimmt die noch nicht indexierten Umsätze der Konten aus ihrem
+   * Verlauf.
+   */
+  public void indexAll(Collection<? extends Account> all) {
+    for (Account account : all) {
+      synchronized (account) {
+        TransactionLog log = account.getTransactionLog();
+
+        lock.writeLock().lock();
+        try {
+          int id = accountId(account.getIban());
+
+          for (int position = indexedCounts.get(id); position < log.size(); position++) {
+            add(id, position, log.getAmountMinorUnits(position), log.getTimestampMicros(position),
+                log.getPurpose(position));
+          }
+        } finally {
+          lock.writeLock().unlock();
+        }
+      }
+    }
+  }
+
+
+  /**
+   * Liefert die Treffer {@code offset} bis {@code offset + limit - 1},
+   * die neuesten zuerst.
+   */
+  public SearchPage search(TransactionQuery query, int offset, int limit) {
+    if (offset < 0 || limit <= 0) {
+      throw new IllegalArgumentException("Ungültiger Seitenbereich: " + offset + "/" + limit);
+    }
+
+    List<String> pageIbans = new ArrayList<>();
+    IntList pagePositions = new IntList();
+    int total;
+
+    lock.readLock().lock();
+    try {
+      TopDocs newest = new TopDocs((int) Math.min((long) offset + limit, docCount));
+      total = collect(query, newest);
+      int[] docs = newest.drainDescending();
+
+      for (int i = offset; i < docs.length; i++) {
+        pageIbans.add(ibans.get(docAccounts[docs[i]]));
+        pagePositions.add(docPositions[docs[i]]);
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+
+    List<SearchHit> hits = new ArrayList<>(pageIbans.size());
+    for (int i = 0; i < pageIbans.size(); i++) {
+      Account account = accounts.apply(pageIbans.get(i));
+
+      if (account != null) {
+        int position = pagePositions.get(i);
+        Transaction transaction;
+
+        synchronized (account) {
+          transaction = account.getTransactionLog().get(position);
+        }
+
+        hits.add(new SearchHit(account.getIban(), position, transaction));
+      }
+    }
+
+    return new SearchPage(hits, total, offset, limit);
+  }
+
+
+  static List<String> tokenize(String text) {
+    if (text == null) {
+      return List.of();
+    }
+
+    return SEPARATORS.splitAsStream(text.toLowerCase(Locale.ROOT))
+        .filter(token -> !token.isEmpty())
+        .distinct()
+        .toList();
+  }
+
+
+  /**
+   * Bietet {@code newest} alle Treffer mit ihrem Zeitpunkt an und liefert
+   * ihre Anzahl.
+   */
+  private int collect(TransactionQuery query, TopDocs newest) {
+    long amountFrom = query.minAmount() == null ? Long.MIN_VALUE : query.minAmount().minorUnits();
+    long amountTo = query.maxAmount() == null ? Long.MAX_VALUE : query.maxAmount().minorUnits();
+    long timeFrom = query.from() == null ? Long.MIN_VALUE : toMicros(query.from());
+    long timeTo = query.to() == null ? Long.MAX_VALUE : toMicros(query.to());
+    boolean amountBounded = query.minAmount() != null || query.maxAmount() != null;
+    boolean timeBounded = query.from() != null || query.to() != null;
+
+    int[] candidates = termCandidates(tokenize(query.text()));
+
+    if (candidates == null && !amountBounded) {
+      timeIndex.offerLargest(timeFrom, timeTo, newest);
+      return timeIndex.count(timeFrom, timeTo);
+    }
+
+    if (candidates == null) {
+      boolean byAmount = !timeBounded
+          || amountIndex.count(amountFrom, amountTo) <= timeIndex.count(timeFrom, timeTo);
+      candidates = byAmount ? amountIndex.docs(amountFrom, amountTo) : timeIndex.docs(timeFrom, timeTo);
+    }
+
+    int total = 0;
+
+    for (int doc : candidates) {
+      if (docAmounts[doc] >= amountFrom && docAmounts[doc] <= amountTo
+          && docTimes[doc] >= timeFrom && docTimes[doc] <= timeTo) {
+        total++;
+        newest.offer(docTimes[doc], doc);
+      }
+    }
+
+    return total;
+  }
+
+
+  /**
+   * Schneidet die Dokumentlisten aller Wörter, beginnend mit der kürzesten.
+   * Liefert {@code null}, wenn die Abfrage keinen Text enthält.
+   */
+  private int[] termCandidates(List<String> tokens) {
+    if (tokens.isEmpty()) {
+      return null;
+    }
+
+    List<IntList> lists = new ArrayList<>(tokens.size());
+    for (String token : tokens) {
+      IntList list = postings.get(token);
+      if (list == null) {
+        return new int[0];
+      }
+      lists.add(list);
+    }
+
+    lists.sort(Comparator.comparingInt(IntList::size));
+
+    int[] result = lists.get(0).toArray();
+    for (int i = 1; i < lists.size() && result.length > 0; i++) {
+      result = intersect(result, lists.get(i));
+    }
+
+    return result;
+  }
+
+
+  private static int[] intersect(int[] smaller, IntList larger) {
+    IntList result = new IntList();
+    int from = 0;
+
+    for (int doc : smaller) {
+      from = lowerBound(larger, doc, from);
+      if (from == larger.size()) {
+        break;
+      }
+      if (larger.get(from) == doc) {
+        result.add(doc);
+      }
+    }
+
+    return result.toArray();
+  }
+
+
+  /**
+   * Galoppierende Suche nach der ersten Stelle ab {@code from}, deren Wert
+   * nicht kleiner als {@code doc} ist.
+   */
+  private static int lowerBound(IntList list, int doc, int from) {
+    int step = 1;
+    int high = from;
+
+    while (high < list.size() && list.get(high) < doc) {
+      from = high + 1;
+      high += step;
+      step <<= 1;
+    }
+
+    high = Math.min(high, list.size());
+
+    while (from < high) {
+      int middle = (from + high) >>> 1;
+      if (list.get(middle) < doc) {
+        from = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+
+    return from;
+  }
+
+
+  private int accountId(String iban) {
+    Integer id = accountIds.get(iban);
+
+    if (id == null) {
+      id = ibans.size();
+      accountIds.put(iban, id);
+      ibans.add(iban);
+      indexedCounts.add(0);
+    }
+
+    return id;
+  }
+
+
+  private void add(int account, int position, long amount, long timestamp, String purpose) {
+    if (docCount == docAccounts.length) {
+      int capacity = docCount + (docCount >> 1);
+      docAccounts = Arrays.copyOf(docAccounts, capacity);
+      docPositions = Arrays.copyOf(docPositions, capacity);
+      docAmounts = Arrays.copyOf(docAmounts, capacity);
+      docTimes = Arrays.copyOf(docTimes, capacity);
+    }
+
+    int doc = docCount++;
+    docAccounts[doc] = account;
+    docPositions[doc] = position;
+    docAmounts[doc] = amount;
+    docTimes[doc] = timestamp;
+
+    for (String token : tokenize(purpose)) {
+      postings.computeIfAbsent(token, ignored -> new IntList()).add(doc);
+    }
+
+    amountIndex.add(amount, doc);
+    timeIndex.add(timestamp, doc);
+    indexedCounts.set(account, position + 1);
+  }
+
+
+  private static long toMicros(Instant instant) {
+    return TransactionLog.toEpochMicros(instant);
+  }
+
+}
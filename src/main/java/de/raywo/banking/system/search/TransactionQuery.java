@@ -0,0 +1,38 @@
+package de.raywo.banking.system.search;
+
+import de.raywo.banking.domain.Money;
+
+import java.time.Instant;
+
+/**
+ * Suchkriterien für Umsätze. Alle gesetzten Kriterien müssen zutreffen; bei
+ * einem Suchtext muss jedes seiner Wörter im Verwendungszweck vorkommen.
+ * Beträge werden ohne Vorzeichen verglichen, die Grenzen sind inklusive.
+ */
+public record TransactionQuery(String text, Money minAmount, Money maxAmount, Instant from, Instant to) {
+
+  public static TransactionQuery all() {
+    return new TransactionQuery(null, null, null, null, null);
+  }
+
+
+  public static TransactionQuery text(String text) {
+    return all().withText(text);
+  }
+
+
+  public TransactionQuery withText(String text) {
+    return new TransactionQuery(text, minAmount, maxAmount, from, to);
+  }
+
+
+  public TransactionQuery withAmount(Money minAmount, Money maxAmount) {
+    return new TransactionQuery(text, minAmount, maxAmount, from, to);
+  }
+
+
+  public TransactionQuery withPeriod(Instant from, Instant to) {
+    return new TransactionQuery(text, minAmount, maxAmount, from, to);
+  }
+
+}
@@ -0,0 +1,263 @@
+package de.raywo.banking.system.timer;
+
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Ein hierarchisches Zeitrad für sehr viele Zeitgeber.
+ * <p>
+ * Jede Ebene hat {@value #SLOTS} Fächer; ein Fach der Ebene {@code n} umfasst
+ * {@code 64^n} Ticks. Ein Zeitgeber liegt auf der höchsten Ebene, in der sich
+ * sein Fälligkeits-Tick vom aktuellen Tick unterscheidet. Erreicht die Zeit
+ * ein Fach einer höheren Ebene, werden dessen Zeitgeber eine Ebene tiefer
+ * einsortiert. Einfügen, Abbrechen und das Auslösen eines Zeitgebers kosten
+ * damit unabhängig von der Anzahl der Zeitgeber konstante Zeit.
+ * <p>
+ * Die Klasse ist nicht threadsicher.
+ */
+public class HierarchicalTimerWheel<T> {
+
+  private static final int BITS = 6;
+  private static final int SLOTS = 1 << BITS;
+  private static final int MASK = SLOTS - 1;
+
+  private final long tickMillis;
+  private final int levels;
+  private final Bucket<T>[][] wheels;
+  private final Bucket<T> overdue = new Bucket<>();
+  private final Bucket<T> overflow = new Bucket<>();
+  private long currentTick;
+  private int size;
+
+
+  public HierarchicalTimerWheel(long tickMillis, int levels, long startMillis) {
+    if (tickMillis <= 0 || levels <= 0 || levels * BITS >= Long.SIZE - 1) {
+      throw new IllegalArgumentException("Ungültige Konfiguration des Zeitrads.");
+    }
+
+    this.tickMillis = tickMillis;
+    this.levels = levels;
+    this.currentTick = Math.floorDiv(startMillis, tickMillis);
+    @SuppressWarnings("unchecked")
+    Bucket<T>[][] wheels = (Bucket<T>[][]) new Bucket<?>[levels][SLOTS];
+    this.wheels = wheels;
+
+    for (int level = 0; level < levels; level++) {
+      for (int slot = 0; slot < SLOTS; slot++) {
+        wheels[level][slot] = new Bucket<>();
+      }
+    }
+  }
+
+
+  public int size() {
+    return size;
+  }
+
+
+  public long getCurrentMillis() {
+    return currentTick * tickMillis;
+  }
+
+
+  public Timeout<T> schedule(T item, long deadlineMillis) {
+    Objects.requireNonNull(item);
+
+    Timeout<T> timeout = new Timeout<>(this, item, Math.floorDiv(deadlineMillis, tickMillis));
+    insert(timeout);
+    size++;
+
+    return timeout;
+  }
+
+
+  /**
+   * Schreitet bis {@code nowMillis} fort und übergibt alle dabei fälligen
+   * Einträge an {@code expired}.
+   */
+  public int advanceTo(long nowMillis, Consumer<? super T> expired) {
+    long targetTick = Math.floorDiv(nowMillis, tickMillis);
+    int fired = expire(overdue, expired);
+
+    while (currentTick < targetTick) {
+      if (size == 0) {
+        currentTick = targetTick;
+        break;
+      }
+
+      currentTick++;
+      cascade();
+      fired += expire(overdue, expired);
+      fired += expire(wheels[0][(int) (currentTick & MASK)], expired);
+    }
+
+    return fired;
+  }
+
+
+  void cancel(Timeout<T> timeout) {
+    if (timeout.bucket != null) {
+      timeout.bucket.remove(timeout);
+      size--;
+    }
+  }
+
+
+  private void insert(Timeout<T> timeout) {
+    long deadline = timeout.deadlineTick;
+
+    if (deadline <= currentTick) {
+      overdue.add(timeout);
+      return;
+    }
+
+    int level = (Long.SIZE - 1 - Long.numberOfLeadingZeros(deadline ^ currentTick)) / BITS;
+    if (level >= levels) {
+      overflow.add(timeout);
+      return;
+    }
+
+    wheels[level][(int) ((deadline >>> (BITS * level)) & MASK)].add(timeout);
+  }
+
+
+  private void cascade() {
+    int highest = 0;
+    while (highest < levels && ((currentTick >>> (BITS * highest)) & MASK) == 0) {
+      highest++;
+    }
+
+    if (highest == levels) {
+      reinsert(overflow);
+      highest = levels - 1;
+    }
+
+    for (int level = highest; level >= 1; level--) {
+      reinsert(wheels[level][(int) ((currentTick >>> (BITS * level)) & MASK)]);
+    }
+  }
+
+
+  private void reinsert(Bucket<T> bucket) {
+    Timeout<T> timeout = bucket.drain();
+
+    while (timeout != null) {
+      Timeout<T> next = timeout.next;
+      insert(timeout);
+      timeout = next;
+    }
+  }
+
+
+  private int expire(Bucket<T> bucket, Consumer<? super T> expired) {
+    int fired = 0;
+    Timeout<T> timeout;
+
+    while ((timeout = bucket.poll()) != null) {
+      size--;
+      fired++;
+      expired.accept(timeout.item);
+    }
+
+    return fired;
+  }
+
+
+  public static final class Timeout<T> {
+
+    private final HierarchicalTimerWheel<T> wheel;
+    private final T item;
+    private final long deadlineTick;
+    private Bucket<T> bucket;
+    private Timeout<T> previous;
+    private Timeout<T> next;
+
+
+    private Timeout(HierarchicalTimerWheel<T> wheel, T item, long deadlineTick) {
+      this.wheel = wheel;
+      this.item = item;
+      this.deadlineTick = deadlineTick;
+    }
+
+
+    public T getItem() {
+      return item;
+    }
+
+
+    public long getDeadlineMillis() {
+      return deadlineTick * wheel.tickMillis;
+    }
+
+
+    public boolean isPending() {
+      return bucket != null;
+    }
+
+
+    public void cancel() {
+      wheel.cancel(this);
+    }
+
+  }
+
+
+  private static final class Bucket<T> {
+
+    private Timeout<T> head;
+
+
+    void add(Timeout<T> timeout) {
+      timeout.bucket = this;
+      timeout.previous = null;
+      timeout.next = head;
+
+      if (head != null) {
+        head.previous = timeout;
+      }
+
+      head = timeout;
+    }
+
+
+    void remove(Timeout<T> timeout) {
+      if (timeout.previous != null) {
+        timeout.previous.next = timeout.next;
+      } else {
+        head = timeout.next;
+      }
+
+      if (timeout.next != null) {
+        timeout.next.previous = timeout.previous;
+      }
+
+      timeout.bucket = null;
+      timeout.previous = null;
+      timeout.next = null;
+    }
+
+
+    Timeout<T> drain() {
+      Timeout<T> first = head;
+      head = null;
+
+      for (Timeout<T> timeout = first; timeout != null; timeout = timeout.next) {
+        timeout.bucket = null;
+      }
+
+      return first;
+    }
+
+
+    Timeout<T> poll() {
+      Timeout<T> timeout = head;
+      if (timeout != null) {
+        remove(timeout);
+      }
+
+      return timeout;
+    }
+
+  }
+
+}
@@ -0,0 +1,100 @@
+package de.raywo.banking.workload;
+
+/**
+ * Ein Histogramm für Laufzeiten in Nanosekunden mit fester Größe. Werte
+ * unter 128 werden exakt gezählt, darüber teilt sich jede Zweierpotenz in 64
+ * gleich breite Klassen; der relative Fehler eines Perzentils liegt damit
+ * unter 1,6 %. Ein Histogramm gehört genau einem Thread und wird am Ende mit
+ * {@link #add(LatencyHistogram)} zusammengeführt.
+ */
+public class LatencyHistogram {
+
+  private static final int SUB_BUCKETS = 64;
+  private static final int EXACT = 2 * SUB_BUCKETS;
+
+  private final long[] counts = new long[index(Long.MAX_VALUE) + 1];
+  private long count;
+  private long sum;
+  private long max;
+
+
+  public void record(long nanos) {
+    long value = Math.max(0, nanos);
+
+    counts[index(value)]++;
+    count++;
+    sum += value;
+    max = Math.max(max, value);
+  }
+
+
+  public void add(LatencyHistogram other) {
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] += other.counts[i];
+    }
+
+    count += other.count;
+    sum += other.sum;
+    max = Math.max(max, other.max);
+  }
+
+
+  public long getCount() {
+    return count;
+  }
+
+
+  public long getMax() {
+    return max;
+  }
+
+
+  public double getMean() {
+    return count == 0 ? 0 : (double) sum / count;
+  }
+
+
+  /**
+   * Liefert die obere Grenze der Klasse, in die das Perzentil {@code p}
+   * (zwischen 0 und 100) fällt.
+   */
+  public long percentile(double p) {
+    if (count == 0) {
+      return 0;
+    }
+
+    long rank = Math.max(1, (long) Math.ceil(p / 100 * count));
+    long seen = 0;
+
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Math.min(max, upperBound(i));
+      }
+    }
+
+    return max;
+  }
+
+
+  private static int index(long value) {
+    if (value < EXACT) {
+      return (int) value;
+    }
+
+    int shift = 63 - Long.numberOfLeadingZeros(value) - 6;
+    return shift * SUB_BUCKETS + (int) (value >>> shift);
+  }
+
+
+  private static long upperBound(int index) {
+    if (index < EXACT) {
+      return index;
+    }
+
+    int shift = index / SUB_BUCKETS - 1;
+    long subBucket = index % SUB_BUCKETS + SUB_BUCKETS;
+    return ((subBucket + 1) << shift) - 1;
+  }
+
+}
@@ -0,0 +1,10 @@
+package de.raywo.banking.workload;
+
+/**
+ * Die Arten von Buchungen, die ein Lastlauf erzeugt.
+ */
+public enum Operation {
+  DEPOSIT,
+  WITHDRAWAL,
+  OVERDRAFT
+}
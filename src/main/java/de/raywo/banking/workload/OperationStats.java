@@ -0,0 +1,68 @@
+package de.raywo.banking.workload;
+
+/**
+ * Zählt die Ergebnisse und Laufzeiten einer {@link Operation}. Jeder
+ * Arbeitsthread führt eigene Zähler, die am Ende zusammengeführt werden.
+ */
+public class OperationStats {
+
+  private final LatencyHistogram latencies = new LatencyHistogram();
+  private long succeeded;
+  private long rejected;
+  private long failed;
+
+
+  public void succeeded(long nanos) {
+    succeeded++;
+    latencies.record(nanos);
+  }
+
+
+  public void rejected(long nanos) {
+    rejected++;
+    latencies.record(nanos);
+  }
+
+
+  public void failed(long nanos) {
+    failed++;
+    latencies.record(nanos);
+  }
+
+
+  public void add(OperationStats other) {
+    succeeded += other.succeeded;
+    rejected += other.rejected;
+    failed += other.failed;
+    latencies.add(other.latencies);
+  }
+
+
+  public long getAttempted() {
+    return succeeded + rejected + failed;
+  }
+
+
+  public long getSucceeded() {
+    return succeeded;
+  }
+
+
+  /**
+   * Buchungen, die wegen fehlender Deckung abgelehnt wurden.
+   */
+  public long getRejected() {
+    return rejected;
+  }
+
+
+  public long getFailed() {
+    return failed;
+  }
+
+
+  public LatencyHistogram getLatencies() {
+    return latencies;
+  }
+
+}
@@ -0,0 +1,299 @@
+package de.raywo.banking.workload;
+
+import de.raywo.banking.domain.*;
+import de.raywo.banking.system.NotFoundException;
+import de.raywo.banking.system.SiBank;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Erzeugt eine Last in Produktionsgröße gegen {@link SiBank} und misst sie.
+ * <p>
+ * Ein Lauf legt die fehlenden Kunden und Konten an, treibt danach aus vielen
+ * Threads Ein- und Auszahlungen durch die Bank und speichert den Bestand.
+ * Die Konten werden nach einer Zipf-Verteilung gewählt, so dass wenige heiße
+ * Konten den Großteil der Buchungen erhalten; die Beträge sind
+ * log-normalverteilt. Ein Teil der Auszahlungen überzieht bewusst Guthaben
+ * und Dispositionsrahmen und muss abgelehnt werden.
+ * <p>
+ * Gemessen werden Start- und Speicherzeit der Bank, Durchsatz sowie die
+ * Laufzeitverteilung je Buchungsart. Ein zweiter Lauf im selben Verzeichnis
+ * übernimmt den gespeicherten Bestand und misst damit den Start mit allen
+ * Daten.
+ */
+public class Workload {
+
+  private static final Currency EURO = Currency.getInstance("EUR");
+  private static final double MEDIAN_AMOUNT_CENTS = 5_000;
+  private static final double AMOUNT_SIGMA = 1.2;
+
+  private static final String[] FIRST_NAMES = {
+      "Anna", "Ben", "Clara", "David", "Emma", "Felix", "Greta", "Hannes", "Ida", "Jonas",
+      "Katharina", "Lukas", "Marie", "Noah", "Ottokar", "Paula", "Quirin", "Rosa", "Simon", "Lieselotte"
+  };
+  private static final String[] LAST_NAMES = {
+      "Müller", "Schmidt", "Schneider", "Fischer", "Weber", "Meyer", "Wagner", "Becker", "Schulz", "Hoffmann",
+      "Koch", "Richter", "Klein", "Wolf", "Schröder", "Neumann", "Schwarz", "Braun", "Domma", "Scharfsinnig"
+  };
+  private static final String[] CITIES = {
+      "Hamburg", "Berlin", "München", "Köln", "Frankfurt", "Stuttgart", "Düsseldorf", "Leipzig", "Dortmund", "Bremen"
+  };
+  private static final String[] DEPOSIT_PURPOSES = {
+      "Gehalt", "Einzahlung", "Rückerstattung", "Umbuchung Sparkonto", "Zinsen", "Überweisung"
+  };
+  private static final String[] WITHDRAWAL_PURPOSES = {
+      "Miete", "Einkauf Supermarkt", "Barauszahlung", "Strom und Gas", "Versicherung", "Kartenzahlung",
+      "Lastschrift Mobilfunk", "Überweisung"
+  };
+
+  private final WorkloadConfig config;
+
+
+  public Workload(WorkloadConfig config) {
+    this.config = Objects.requireNonNull(config);
+  }
+
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    WorkloadConfig config = WorkloadConfig.parse(args);
+    WorkloadReport report = new Workload(config).run();
+    String json = report.toJson();
+
+    System.out.print(json);
+
+    if (config.reportPath() != null) {
+      Files.writeString(Path.of(config.reportPath()), json);
+    }
+  }
+
+
+  public WorkloadReport run() throws IOException, InterruptedException {
+    long start = System.nanoTime();
+    SiBank bank = SiBank.getInstance("Signal Iduna Bank", "Hamburg", "SIBAHH26");
+    long startupMillis = millisSince(start);
+
+    start = System.nanoTime();
+    String[] ibans = populate(bank);
+    long populateMillis = millisSince(start);
+
+    if (config.warmupTransactions() > 0) {
+      drive(bank, ibans, config.warmupTransactions(), ~config.seed());
+    }
+
+    start = System.nanoTime();
+    Map<Operation, OperationStats> operations = drive(bank, ibans, config.transactions(), config.seed());
+    long loadMillis = millisSince(start);
+
+    start = System.nanoTime();
+    bank.persist();
+    long persistMillis = millisSince(start);
+
+    start = System.nanoTime();
+    reload(bank.getDataDirectory());
+    long reloadMillis = millisSince(start);
+
+    long posted = 0;
+    for (Account account : bank.getAccounts()) {
+      posted += account.getTransactionLog().size();
+    }
+
+    return new WorkloadReport(
+        config,
+        startupMillis,
+        populateMillis,
+        loadMillis,
+        persistMillis,
+        reloadMillis,
+        bank.getAccounts().size(),
+        posted,
+        operations
+    );
+  }
+
+
+  private static String iban(int index) {
+    return String.format("DE00%018d", index);
+  }
+
+
+  /**
+   * Legt alle noch fehlenden Konten samt Eröffnungseinzahlung an. Konten aus
+   * einem früheren Lauf werden übernommen.
+   */
+  private String[] populate(SiBank bank) {
+    SplittableRandom random = new SplittableRandom(config.seed());
+    Customer[] customers = new Customer[config.customers()];
+    Money limit = Money.euroOf(config.overdraftLimit());
+    String[] ibans = new String[config.accounts()];
+
+    for (int i = 0; i < ibans.length; i++) {
+      ibans[i] = iban(i);
+
+      try {
+        bank.getAccount(ibans[i]);
+        continue;
+      } catch (NotFoundException e) {
+        // Das Konto wird neu angelegt.
+      }
+
+      int owner = i % customers.length;
+      if (customers[owner] == null) {
+        customers[owner] = new Customer(
+            pick(FIRST_NAMES, random) + " " + pick(LAST_NAMES, random),
+            pick(CITIES, random)
+        );
+        bank.addCustomer(customers[owner]);
+      }
+
+      Account account;
+      if (random.nextDouble() < config.savingsShare()) {
+        account = new SavingsAccount(ibans[i], customers[owner]);
+      } else {
+        CurrentAccount current = new CurrentAccount(ibans[i], customers[owner]);
+        current.setLimit(limit);
+        account = current;
+      }
+
+      bank.addAccount(account);
+
+      try {
+        bank.makeTransaction(new Deposit(ibans[i], "Eröffnungseinzahlung", amount(random, 4)));
+      } catch (Exception e) {
+        throw new IllegalStateException("Eröffnungseinzahlung für " + ibans[i] + " fehlgeschlagen.", e);
+      }
+    }
+
+    return ibans;
+  }
+
+
+  private Map<Operation, OperationStats> drive(SiBank bank, String[] ibans, long transactions, long seed)
+      throws InterruptedException {
+    ZipfSampler accounts = new ZipfSampler(ibans.length, config.zipfExponent());
+    SplittableRandom seeds = new SplittableRandom(seed);
+    CountDownLatch ready = new CountDownLatch(1);
+    Thread[] workers = new Thread[config.threads()];
+    List<Map<Operation, OperationStats>> results = new ArrayList<>();
+
+    for (int t = 0; t < workers.length; t++) {
+      long share = transactions / workers.length + (t < transactions % workers.length ? 1 : 0);
+      SplittableRandom random = seeds.split();
+      Map<Operation, OperationStats> stats = newStats();
+
+      results.add(stats);
+      workers[t] = new Thread(() -> {
+        try {
+          ready.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+
+        for (long i = 0; i < share; i++) {
+          post(bank, ibans[(int) accounts.sample(random)], random, stats);
+        }
+      }, "workload-" + t);
+      workers[t].start();
+    }
+
+    ready.countDown();
+    for (Thread worker : workers) {
+      worker.join();
+    }
+
+    Map<Operation, OperationStats> total = newStats();
+    results.forEach(stats -> stats.forEach((operation, counts) -> total.get(operation).add(counts)));
+
+    return total;
+  }
+
+
+  private void post(SiBank bank, String iban, SplittableRandom random, Map<Operation, OperationStats> stats) {
+    double choice = random.nextDouble();
+    Operation operation;
+    Transaction transaction;
+
+    if (choice < config.overdraftShare()) {
+      operation = Operation.OVERDRAFT;
+      transaction = new Withdrawal(iban, pick(WITHDRAWAL_PURPOSES, random), overdraftAmount(bank, iban, random));
+    } else if (choice < config.overdraftShare() + config.withdrawalShare()) {
+      operation = Operation.WITHDRAWAL;
+      transaction = new Withdrawal(iban, pick(WITHDRAWAL_PURPOSES, random), amount(random, 1));
+    } else {
+      operation = Operation.DEPOSIT;
+      transaction = new Deposit(iban, pick(DEPOSIT_PURPOSES, random), amount(random, 1));
+    }
+
+    OperationStats counts = stats.get(operation);
+    long start = System.nanoTime();
+
+    try {
+      bank.makeTransaction(transaction);
+      counts.succeeded(System.nanoTime() - start);
+    } catch (InsufficientFundsException e) {
+      counts.rejected(System.nanoTime() - start);
+    } catch (Exception e) {
+      counts.failed(System.nanoTime() - start);
+    }
+  }
+
+
+  /**
+   * Ein Betrag, der Guthaben und Dispositionsrahmen des Kontos übersteigt.
+   */
+  private static Money overdraftAmount(SiBank bank, String iban, SplittableRandom random) {
+    try {
+      AccountState state = bank.getAccount(iban).getState();
+
+      return state.availableBalance().add(state.limit()).add(amount(random, 1));
+    } catch (NotFoundException e) {
+      return amount(random, 1);
+    }
+  }
+
+
+  private static Money amount(SplittableRandom random, int factor) {
+    double cents = MEDIAN_AMOUNT_CENTS * Math.exp(AMOUNT_SIGMA * random.nextGaussian());
+    return Money.ofMinorUnits(Math.max(1, Math.round(cents)) * factor, EURO);
+  }
+
+
+  /**
+   * Liest Konten und Kunden über dieselben Repositories wie {@link SiBank}
+   * beim Start.
+   */
+  private static void reload(Path dataDirectory) throws IOException {
+    try {
+      SiBank.createAccountRepository(dataDirectory).initialize();
+      SiBank.createCustomerRepository(dataDirectory).initialize();
+    } catch (ClassNotFoundException e) {
+      throw new IOException("Gespeicherte Daten konnten nicht gelesen werden.", e);
+    }
+  }
+
+
+  private static Map<Operation, OperationStats> newStats() {
+    Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+
+    for (Operation operation : Operation.values()) {
+      stats.put(operation, new OperationStats());
+    }
+
+    return stats;
+  }
+
+
+  private static String pick(String[] values, SplittableRandom random) {
+    return values[random.nextInt(values.length)];
+  }
+
+
+  private static long millisSince(long start) {
+    return (System.nanoTime() - start) / 1_000_000;
+  }
+
+}
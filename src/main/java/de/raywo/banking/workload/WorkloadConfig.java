@@ -0,0 +1,129 @@
+package de.raywo.banking.workload;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Die Parameter eines Lastlaufs. Über die Kommandozeile werden sie als
+ * {@code --name=wert} angegeben, etwa {@code --accounts=1000000 --threads=16}.
+ */
+public record WorkloadConfig(
+    int customers,
+    int accounts,
+    long transactions,
+    long warmupTransactions,
+    int threads,
+    double zipfExponent,
+    double withdrawalShare,
+    double overdraftShare,
+    double savingsShare,
+    BigDecimal overdraftLimit,
+    long seed,
+    String reportPath
+) {
+
+  private static final Set<String> OPTIONS = Set.of(
+      "customers", "accounts", "transactions", "warmup", "threads", "zipf",
+      "withdrawals", "overdrafts", "savings", "limit", "seed", "report"
+  );
+
+
+  public WorkloadConfig {
+    requirePositive("customers", customers);
+    requirePositive("accounts", accounts);
+    requirePositive("transactions", transactions);
+    requirePositive("threads", threads);
+
+    if (warmupTransactions < 0) {
+      throw new IllegalArgumentException("Die Zahl der Aufwärmbuchungen darf nicht negativ sein.");
+    }
+    if (zipfExponent < 0) {
+      throw new IllegalArgumentException("Der Zipf-Exponent darf nicht negativ sein.");
+    }
+
+    requireShare("withdrawals", withdrawalShare);
+    requireShare("overdrafts", overdraftShare);
+    requireShare("savings", savingsShare);
+    requireShare("withdrawals + overdrafts", withdrawalShare + overdraftShare);
+
+    if (overdraftLimit.signum() < 0) {
+      throw new IllegalArgumentException("Der Dispositionsrahmen darf nicht negativ sein.");
+    }
+  }
+
+
+  public static WorkloadConfig defaults() {
+    return new WorkloadConfig(
+        200_000,
+        300_000,
+        2_000_000,
+        200_000,
+        Runtime.getRuntime().availableProcessors(),
+        0.99,
+        0.4,
+        0.02,
+        0.2,
+        BigDecimal.valueOf(500),
+        42,
+        null
+    );
+  }
+
+
+  public static WorkloadConfig parse(String[] args) {
+    Map<String, String> options = new HashMap<>();
+
+    for (String arg : args) {
+      int separator = arg.indexOf('=');
+      if (!arg.startsWith("--") || separator < 0) {
+        throw new IllegalArgumentException("Ungültige Option: " + arg);
+      }
+
+      String option = arg.substring(2, separator).toLowerCase(Locale.ROOT);
+      if (!OPTIONS.contains(option)) {
+        throw new IllegalArgumentException("Unbekannte Option: " + arg);
+      }
+
+      options.put(option, arg.substring(separator + 1));
+    }
+
+    WorkloadConfig defaults = defaults();
+
+    try {
+      return new WorkloadConfig(
+          Integer.parseInt(options.getOrDefault("customers", String.valueOf(defaults.customers))),
+          Integer.parseInt(options.getOrDefault("accounts", String.valueOf(defaults.accounts))),
+          Long.parseLong(options.getOrDefault("transactions", String.valueOf(defaults.transactions))),
+          Long.parseLong(options.getOrDefault("warmup", String.valueOf(defaults.warmupTransactions))),
+          Integer.parseInt(options.getOrDefault("threads", String.valueOf(defaults.threads))),
+          Double.parseDouble(options.getOrDefault("zipf", String.valueOf(defaults.zipfExponent))),
+          Double.parseDouble(options.getOrDefault("withdrawals", String.valueOf(defaults.withdrawalShare))),
+          Double.parseDouble(options.getOrDefault("overdrafts", String.valueOf(defaults.overdraftShare))),
+          Double.parseDouble(options.getOrDefault("savings", String.valueOf(defaults.savingsShare))),
+          new BigDecimal(options.getOrDefault("limit", defaults.overdraftLimit.toPlainString())),
+          Long.parseLong(options.getOrDefault("seed", String.valueOf(defaults.seed))),
+          options.getOrDefault("report", defaults.reportPath)
+      );
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Ungültiger Zahlenwert: " + e.getMessage(), e);
+    }
+  }
+
+
+  private static void requirePositive(String name, long value) {
+    if (value <= 0) {
+      throw new IllegalArgumentException("Der Wert für " + name + " muss positiv sein.");
+    }
+  }
+
+
+  private static void requireShare(String name, double share) {
+    if (share < 0 || share > 1) {
+      throw new IllegalArgumentException("Der Anteil " + name + " muss zwischen 0 und 1 liegen.");
+    }
+  }
+
+}
@@ -0,0 +1,110 @@
+package de.raywo.banking.workload;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Das Ergebnis eines Lastlaufs. {@link #toJson()} liefert es in einer
+ * maschinenlesbaren Form, damit Läufe verschiedener Stände verglichen werden
+ * können. Zeiten sind in Millisekunden, Laufzeiten einzelner Buchungen in
+ * Mikrosekunden angegeben.
+ */
+public record WorkloadReport(
+    WorkloadConfig config,
+    long startupMillis,
+    long populateMillis,
+    long loadMillis,
+    long persistMillis,
+    long reloadMillis,
+    int accounts,
+    long postedTransactions,
+    Map<Operation, OperationStats> operations
+) {
+
+  public long measuredTransactions() {
+    return operations.values().stream().mapToLong(OperationStats::getAttempted).sum();
+  }
+
+
+  public double throughput() {
+    return loadMillis == 0 ? 0 : measuredTransactions() * 1000.0 / loadMillis;
+  }
+
+
+  public String toJson() {
+    StringBuilder json = new StringBuilder();
+
+    json.append("{\n");
+    json.append("  \"config\": {\n");
+    field(json, 4, "customers", config.customers(), true);
+    field(json, 4, "accounts", config.accounts(), true);
+    field(json, 4, "transactions", config.transactions(), true);
+    field(json, 4, "warmupTransactions", config.warmupTransactions(), true);
+    field(json, 4, "threads", config.threads(), true);
+    field(json, 4, "zipfExponent", config.zipfExponent(), true);
+    field(json, 4, "withdrawalShare", config.withdrawalShare(), true);
+    field(json, 4, "overdraftShare", config.overdraftShare(), true);
+    field(json, 4, "savingsShare", config.savingsShare(), true);
+    field(json, 4, "overdraftLimit", config.overdraftLimit().toPlainString(), true);
+    field(json, 4, "seed", config.seed(), false);
+    json.append("  },\n");
+    field(json, 2, "startupMillis", startupMillis, true);
+    field(json, 2, "populateMillis", populateMillis, true);
+    field(json, 2, "loadMillis", loadMillis, true);
+    field(json, 2, "persistMillis", persistMillis, true);
+    field(json, 2, "reloadMillis", reloadMillis, true);
+    field(json, 2, "accounts", accounts, true);
+    field(json, 2, "postedTransactions", postedTransactions, true);
+    field(json, 2, "measuredTransactions", measuredTransactions(), true);
+    field(json, 2, "throughputPerSecond", Math.round(throughput()), true);
+
+    OperationStats total = new OperationStats();
+    operations.values().forEach(total::add);
+
+    json.append("  \"operations\": {\n");
+    for (Map.Entry<Operation, OperationStats> entry : operations.entrySet()) {
+      operation(json, entry.getKey().name().toLowerCase(Locale.ROOT), entry.getValue(), true);
+    }
+    operation(json, "all", total, false);
+    json.append("  }\n");
+    json.append("}\n");
+
+    return json.toString();
+  }
+
+
+  private static void operation(StringBuilder json, String name, OperationStats stats, boolean more) {
+    LatencyHistogram latencies = stats.getLatencies();
+
+    json.append("    \"").append(name).append("\": {\n");
+    field(json, 6, "attempted", stats.getAttempted(), true);
+    field(json, 6, "succeeded", stats.getSucceeded(), true);
+    field(json, 6, "rejected", stats.getRejected(), true);
+    field(json, 6, "failed", stats.getFailed(), true);
+    json.append("      \"latencyMicros\": {\n");
+    field(json, 8, "mean", latencies.getMean() / 1000, true);
+    field(json, 8, "p50", latencies.percentile(50) / 1000.0, true);
+    field(json, 8, "p90", latencies.percentile(90) / 1000.0, true);
+    field(json, 8, "p99", latencies.percentile(99) / 1000.0, true);
+    field(json, 8, "p999", latencies.percentile(99.9) / 1000.0, true);
+    field(json, 8, "max", latencies.getMax() / 1000.0, false);
+    json.append("      }\n");
+    json.append("    }").append(more ? ",\n" : "\n");
+  }
+
+
+  private static void field(StringBuilder json, int indent, String name, Object value, boolean more) {
+    json.append(" ".repeat(indent)).append('"').append(name).append("\": ");
+
+    if (value instanceof Double number) {
+      json.append(String.format(Locale.ROOT, "%.3f", number));
+    } else if (value instanceof String text) {
+      json.append('"').append(text).append('"');
+    } else {
+      json.append(value);
+    }
+
+    json.append(more ? ",\n" : "\n");
+  }
+
+}
@@ -0,0 +1,79 @@
+package de.raywo.banking.workload;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Zieht Ränge {@code 0 .. n-1} nach einer Zipf-Verteilung: Rang {@code k}
+ * tritt mit einer Wahrscheinlichkeit proportional zu {@code 1 / (k+1)^s}
+ * auf. Das Verfahren ist die Rejection-Inversion nach Hörmann und Derflinger;
+ * es braucht weder eine Tabelle noch eine Normierungssumme und kommt daher
+ * auch mit Millionen von Konten ohne Vorberechnung aus.
+ */
+public class ZipfSampler {
+
+  private final long n;
+  private final double exponent;
+  private final double hIntegralX1;
+  private final double hIntegralN;
+  private final double s;
+
+
+  public ZipfSampler(long n, double exponent) {
+    if (n <= 0) {
+      throw new IllegalArgumentException("Die Zahl der Elemente muss positiv sein.");
+    }
+
+    this.n = n;
+    this.exponent = exponent;
+    this.hIntegralX1 = hIntegral(1.5) - 1;
+    this.hIntegralN = hIntegral(n + 0.5);
+    this.s = 2 - hIntegralInverse(hIntegral(2.5) - h(2));
+  }
+
+
+  public long sample(RandomGenerator random) {
+    while (true) {
+      double u = hIntegralN + random.nextDouble() * (hIntegralX1 - hIntegralN);
+      double x = hIntegralInverse(u);
+      long k = Math.max(1, Math.min(n, (long) (x + 0.5)));
+
+      if (k - x <= s || u >= hIntegral(k + 0.5) - h(k)) {
+        return k - 1;
+      }
+    }
+  }
+
+
+  private double h(double x) {
+    return Math.exp(-exponent * Math.log(x));
+  }
+
+
+  private double hIntegral(double x) {
+    double logX = Math.log(x);
+    return expm1OverX((1 - exponent) * logX) * logX;
+  }
+
+
+  private double hIntegralInverse(double x) {
+    double t = Math.max(-1, x * (1 - exponent));
+    return Math.exp(log1pOverX(t) * x);
+  }
+
+
+  private static double log1pOverX(double x) {
+    if (Math.abs(x) > 1e-8) {
+      return Math.log1p(x) / x;
+    }
+    return 1 - x * (0.5 - x * (1.0 / 3 - 0.25 * x));
+  }
+
+
+  private static double expm1OverX(double x) {
+    if (Math.abs(x) > 1e-8) {
+      return Math.expm1(x) / x;
+    }
+    return 1 + x * 0.5 * (1 + x / 3 * (1 + 0.25 * x));
+  }
+
+}